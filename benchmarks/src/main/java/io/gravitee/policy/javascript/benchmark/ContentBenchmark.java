@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.benchmark;
+
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.stream.ReadWriteStream;
+import io.gravitee.policy.javascript.JavaScriptPolicy;
+import io.gravitee.policy.javascript.benchmark.support.Bodies;
+import io.gravitee.policy.javascript.configuration.ContentMode;
+import io.gravitee.policy.javascript.configuration.JavaScriptPolicyConfiguration;
+import io.gravitee.policy.javascript.fixtures.FakeExecutionContext;
+import io.gravitee.policy.javascript.fixtures.FakeRequest;
+import io.gravitee.policy.javascript.fixtures.FakeResponse;
+import io.gravitee.policy.javascript.fixtures.RecordingPolicyChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the <code>onRequestContent</code> and <code>onResponseContent</code> phases, from the first chunk of
+ * the body written to the policy stream to the last chunk written downstream.
+ *
+ * @author gr1d.io team
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class ContentBenchmark {
+
+    public enum Scenario {
+
+        JSON_TRANSFORM(ContentMode.BUFFERED,
+                "var content = JSON.parse(${body}.content);" +
+                "content.transformed = true;" +
+                "JSON.stringify(content);"),
+
+        PASS_THROUGH(ContentMode.BUFFERED,
+                "var State = Java.type('io.gravitee.policy.javascript.PolicyResult.State');" +
+                "if (${body}.contentLength == 0) {" +
+                "    result.state = State.FAILURE;" +
+                "}" +
+                "${body}.buffer;"),
+
+        STREAMING_PASS_THROUGH(ContentMode.STREAMING,
+                "stream.onChunk(function(chunk) { return chunk; });");
+
+        private final ContentMode contentMode;
+        private final String script;
+
+        Scenario(ContentMode contentMode, String script) {
+            this.contentMode = contentMode;
+            this.script = script;
+        }
+    }
+
+    @Param
+    public Scenario scenario;
+
+    @Param({"1024", "65536", "1048576", "52428800"})
+    public int bodySize;
+
+    private final JavaScriptPolicyConfiguration configuration = new JavaScriptPolicyConfiguration();
+    private final FakeRequest request = new FakeRequest();
+    private final FakeResponse response = new FakeResponse();
+    private final FakeExecutionContext executionContext = new FakeExecutionContext()
+            .attribute(ExecutionContext.ATTR_API, "benchmark-api");
+    private final RecordingPolicyChain policyChain = new RecordingPolicyChain();
+    private List<Buffer> chunks;
+
+    @Setup
+    public void setup() {
+        configuration.setContentMode(scenario.contentMode);
+        configuration.setOnRequestContentScript(scenario.script.replace("${body}", "request"));
+        configuration.setOnResponseContentScript(scenario.script.replace("${body}", "response"));
+        chunks = Bodies.chunks(Bodies.json(bodySize), Bodies.CHUNK_SIZE);
+    }
+
+    @Benchmark
+    public long onRequestContent() {
+        return Bodies.drain(new JavaScriptPolicy(configuration)
+                .onRequestContent(request, response, executionContext, policyChain.reset()), chunks);
+    }
+
+    @Benchmark
+    public long onResponseContent() {
+        return Bodies.drain(new JavaScriptPolicy(configuration)
+                .onResponseContent(request, response, executionContext, policyChain.reset()), chunks);
+    }
+}
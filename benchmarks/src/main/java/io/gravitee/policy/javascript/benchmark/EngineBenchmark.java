@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.benchmark;
+
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.javascript.JavaScriptPolicy;
+import io.gravitee.policy.javascript.benchmark.support.Bodies;
+import io.gravitee.policy.javascript.configuration.JavaScriptPolicyConfiguration;
+import io.gravitee.policy.javascript.configuration.ScriptEngineType;
+import io.gravitee.policy.javascript.fixtures.FakeExecutionContext;
+import io.gravitee.policy.javascript.fixtures.FakeRequest;
+import io.gravitee.policy.javascript.fixtures.FakeResponse;
+import io.gravitee.policy.javascript.fixtures.RecordingPolicyChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the script engines on the same scripts: a header rewrite in <code>onRequest</code>, and a JSON
+ * transformation and a compute-bound loop in <code>onRequestContent</code>.
+ *
+ * GraalJS only compiles scripts to machine code when running on GraalVM: on other JVMs, it runs in interpreter mode.
+ *
+ * @author gr1d.io team
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EngineBenchmark {
+
+    private static final String HEADER_REWRITE =
+            "request.headers.set('X-Gravitee-Policy', 'javascript');" +
+            "request.headers.remove('X-Internal');";
+
+    private static final String JSON_TRANSFORM =
+            "var content = JSON.parse(request.content);" +
+            "content.transformed = true;" +
+            "JSON.stringify(content);";
+
+    private static final String COMPUTE =
+            "var content = request.content, hash = 0;" +
+            "for (var i = 0; i < content.length; i++) {" +
+            "    hash = (hash * 31 + content.charCodeAt(i)) | 0;" +
+            "}" +
+            "request.headers.set('X-Hash', '' + hash);";
+
+    @Param
+    public ScriptEngineType engine;
+
+    @Param({"10240"})
+    public int bodySize;
+
+    private final JavaScriptPolicyConfiguration headersConfiguration = new JavaScriptPolicyConfiguration();
+    private final JavaScriptPolicyConfiguration transformConfiguration = new JavaScriptPolicyConfiguration();
+    private final JavaScriptPolicyConfiguration computeConfiguration = new JavaScriptPolicyConfiguration();
+    private final FakeRequest request = new FakeRequest();
+    private final FakeResponse response = new FakeResponse();
+    private final FakeExecutionContext executionContext = new FakeExecutionContext()
+            .attribute(ExecutionContext.ATTR_API, "benchmark-api");
+    private final RecordingPolicyChain policyChain = new RecordingPolicyChain();
+    private List<Buffer> chunks;
+
+    @Setup
+    public void setup() {
+        headersConfiguration.setEngine(engine);
+        headersConfiguration.setOnRequestScript(HEADER_REWRITE);
+        transformConfiguration.setEngine(engine);
+        transformConfiguration.setOnRequestContentScript(JSON_TRANSFORM);
+        computeConfiguration.setEngine(engine);
+        computeConfiguration.setOnRequestContentScript(COMPUTE);
+        chunks = Bodies.chunks(Bodies.json(bodySize), Bodies.CHUNK_SIZE);
+    }
+
+    @Benchmark
+    public RecordingPolicyChain headerRewrite() {
+        new JavaScriptPolicy(headersConfiguration).onRequest(request, response, executionContext, policyChain.reset());
+        return policyChain;
+    }
+
+    @Benchmark
+    public long jsonTransform() {
+        return Bodies.drain(new JavaScriptPolicy(transformConfiguration)
+                .onRequestContent(request, response, executionContext, policyChain.reset()), chunks);
+    }
+
+    @Benchmark
+    public long compute() {
+        return Bodies.drain(new JavaScriptPolicy(computeConfiguration)
+                .onRequestContent(request, response, executionContext, policyChain.reset()), chunks);
+    }
+}
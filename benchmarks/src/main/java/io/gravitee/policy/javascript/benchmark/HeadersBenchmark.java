@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.benchmark;
+
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.policy.javascript.JavaScriptPolicy;
+import io.gravitee.policy.javascript.configuration.JavaScriptPolicyConfiguration;
+import io.gravitee.policy.javascript.fixtures.FakeExecutionContext;
+import io.gravitee.policy.javascript.fixtures.FakeRequest;
+import io.gravitee.policy.javascript.fixtures.FakeResponse;
+import io.gravitee.policy.javascript.fixtures.RecordingPolicyChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the <code>onRequest</code> and <code>onResponse</code> phases. As done by the gateway, a new policy
+ * instance is created for each invocation.
+ *
+ * @author gr1d.io team
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HeadersBenchmark {
+
+    public enum Scenario {
+
+        HEADER_REWRITE(
+                "request.headers.set('X-Gravitee-Policy', 'javascript');" +
+                "request.headers.remove('X-Internal');" +
+                "response.headers.set('X-Powered-By', 'gr1d');"),
+
+        HEADER_VIEW_REWRITE(
+                "request.header.set('X-Gravitee-Policy', 'javascript');" +
+                "request.header.remove('X-Internal');" +
+                "response.header.set('X-Powered-By', 'gr1d');"),
+
+        REJECTION(
+                "var State = Java.type('io.gravitee.policy.javascript.PolicyResult.State');" +
+                "if (!request.headers.containsKey('X-Api-Key')) {" +
+                "    result.state = State.FAILURE;" +
+                "    result.code = 401;" +
+                "    result.error = 'Missing API key';" +
+                "}");
+
+        private final String script;
+
+        Scenario(String script) {
+            this.script = script;
+        }
+    }
+
+    @Param
+    public Scenario scenario;
+
+    private final JavaScriptPolicyConfiguration configuration = new JavaScriptPolicyConfiguration();
+    private final FakeRequest request = new FakeRequest();
+    private final FakeResponse response = new FakeResponse();
+    private final FakeExecutionContext executionContext = new FakeExecutionContext()
+            .attribute(ExecutionContext.ATTR_API, "benchmark-api");
+    private final RecordingPolicyChain policyChain = new RecordingPolicyChain();
+
+    @Setup
+    public void setup() {
+        configuration.setOnRequestScript(scenario.script);
+        configuration.setOnResponseScript(scenario.script);
+        request.headers().set("X-Internal", "true");
+    }
+
+    @Benchmark
+    public RecordingPolicyChain onRequest() {
+        new JavaScriptPolicy(configuration).onRequest(request, response, executionContext, policyChain.reset());
+        return policyChain;
+    }
+
+    @Benchmark
+    public RecordingPolicyChain onResponse() {
+        new JavaScriptPolicy(configuration).onResponse(request, response, executionContext, policyChain.reset());
+        return policyChain;
+    }
+}
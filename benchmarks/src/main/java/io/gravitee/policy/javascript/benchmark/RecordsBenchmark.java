@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.benchmark;
+
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.javascript.JavaScriptPolicy;
+import io.gravitee.policy.javascript.benchmark.support.Bodies;
+import io.gravitee.policy.javascript.configuration.ContentMode;
+import io.gravitee.policy.javascript.configuration.JavaScriptPolicyConfiguration;
+import io.gravitee.policy.javascript.configuration.ScriptEngineType;
+import io.gravitee.policy.javascript.fixtures.FakeExecutionContext;
+import io.gravitee.policy.javascript.fixtures.FakeRequest;
+import io.gravitee.policy.javascript.fixtures.FakeResponse;
+import io.gravitee.policy.javascript.fixtures.RecordingPolicyChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the <code>RECORDS</code> content mode on a newline-delimited JSON body, the script being evaluated for
+ * each record (<code>batchSize</code> of 1) or for each batch of records.
+ *
+ * @author gr1d.io team
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class RecordsBenchmark {
+
+    public enum Scenario {
+
+        // Drops the records of a given price, the engine entry cost dominating
+        FILTER(
+                "response.content.indexOf('\"price\":42.5') < 0 ? undefined : '';",
+                "var outputs = [];" +
+                "for (var i = 0; i < records.length; i++) {" +
+                "    outputs.push(records[i].content.indexOf('\"price\":42.5') < 0 ? undefined : '');" +
+                "}" +
+                "outputs;"),
+
+        // Same filter, the batch script setting the output of each record rather than building an array
+        FILTER_OUTPUTS(
+                "response.content.indexOf('\"price\":42.5') < 0 ? undefined : '';",
+                "for (var i = 0; i < records.length; i++) {" +
+                "    var record = records[i];" +
+                "    record.output = record.content.indexOf('\"price\":42.5') < 0 ? undefined : '';" +
+                "}"),
+
+        // Adds a member to each record, the JSON parsing and serialization dominating
+        JSON_TRANSFORM(
+                "var item = response.json;" +
+                "item.discounted = item.price * 0.9;" +
+                "item;",
+                "var outputs = [];" +
+                "for (var i = 0; i < records.length; i++) {" +
+                "    var item = records[i].json;" +
+                "    item.discounted = item.price * 0.9;" +
+                "    outputs.push(item);" +
+                "}" +
+                "outputs;");
+
+        private final String recordScript;
+        private final String batchScript;
+
+        Scenario(String recordScript, String batchScript) {
+            this.recordScript = recordScript;
+            this.batchScript = batchScript;
+        }
+    }
+
+    @Param
+    public Scenario scenario;
+
+    @Param({"NASHORN", "GRAALJS"})
+    public ScriptEngineType engine;
+
+    @Param({"1", "10", "100"})
+    public int batchSize;
+
+    @Param({"10000"})
+    public int records;
+
+    private final JavaScriptPolicyConfiguration configuration = new JavaScriptPolicyConfiguration();
+    private final FakeRequest request = new FakeRequest();
+    private final FakeResponse response = new FakeResponse();
+    private final FakeExecutionContext executionContext = new FakeExecutionContext()
+            .attribute(ExecutionContext.ATTR_API, "benchmark-api");
+    private final RecordingPolicyChain policyChain = new RecordingPolicyChain();
+    private List<Buffer> chunks;
+
+    @Setup
+    public void setup() {
+        configuration.setEngine(engine);
+        configuration.setContentMode(ContentMode.RECORDS);
+        configuration.setRecordBatchSize(batchSize);
+        configuration.setOnResponseContentScript(batchSize == 1 ? scenario.recordScript : scenario.batchScript);
+        chunks = Bodies.chunks(Bodies.ndjson(records), Bodies.CHUNK_SIZE);
+    }
+
+    @Benchmark
+    public long onResponseContent() {
+        return Bodies.drain(new JavaScriptPolicy(configuration)
+                .onResponseContent(request, response, executionContext, policyChain.reset()), chunks);
+    }
+}
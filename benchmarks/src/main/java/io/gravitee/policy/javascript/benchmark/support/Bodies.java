@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.benchmark.support;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.stream.ReadWriteStream;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author gr1d.io team
+ */
+public final class Bodies {
+
+    public static final int CHUNK_SIZE = 8192;
+
+    private Bodies() {
+    }
+
+    /**
+     * Builds a JSON document of approximately {@code size} bytes: <code>{"items": [{...}, ...]}</code>.
+     */
+    public static byte[] json(int size) {
+        StringBuilder json = new StringBuilder(size + 256).append("{\"items\":[");
+        int id = 0;
+        do {
+            if (id > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(id)
+                    .append(",\"name\":\"item-").append(id)
+                    .append("\",\"tags\":[\"gravitee\",\"javascript\"],\"price\":").append(id % 100).append(".5}");
+            id++;
+        } while (json.length() < size - 2);
+
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Builds a newline-delimited JSON body of {@code count} records, one per line.
+     */
+    public static byte[] ndjson(int count) {
+        StringBuilder ndjson = new StringBuilder(count * 96);
+        for (int id = 0; id < count; id++) {
+            ndjson.append("{\"id\":").append(id)
+                    .append(",\"name\":\"item-").append(id)
+                    .append("\",\"tags\":[\"gravitee\",\"javascript\"],\"price\":").append(id % 100).append(".5}\n");
+        }
+        return ndjson.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static List<Buffer> chunks(byte[] body, int chunkSize) {
+        List<Buffer> chunks = new ArrayList<>();
+        for (int offset = 0; offset < body.length; offset += chunkSize) {
+            chunks.add(Buffer.buffer(Arrays.copyOfRange(body, offset, Math.min(body.length, offset + chunkSize))));
+        }
+        return chunks;
+    }
+
+    /**
+     * Writes the chunks to the stream, and returns the number of bytes written downstream by the stream.
+     */
+    public static long drain(ReadWriteStream<Buffer> stream, List<Buffer> chunks) {
+        long[] length = new long[1];
+        stream.bodyHandler(buffer -> length[0] += buffer.length());
+        for (Buffer chunk : chunks) {
+            stream.write(chunk);
+        }
+        stream.end();
+        return length[0];
+    }
+}
@@ -15,17 +15,18 @@
  */
 package io.gravitee.policy.javascript;
 
-import javax.script.Bindings;
-import javax.script.ScriptEngineManager;
-import javax.script.ScriptEngine;
-import javax.script.ScriptException;
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.common.http.HttpHeadersValues;
+import io.gravitee.common.http.HttpStatusCode;
 import io.gravitee.gateway.api.ExecutionContext;
 import io.gravitee.gateway.api.Request;
 import io.gravitee.gateway.api.Response;
 import io.gravitee.gateway.api.buffer.Buffer;
 import io.gravitee.gateway.api.http.stream.TransformableRequestStreamBuilder;
 import io.gravitee.gateway.api.http.stream.TransformableResponseStreamBuilder;
+import io.gravitee.gateway.api.stream.BufferedReadWriteStream;
 import io.gravitee.gateway.api.stream.ReadWriteStream;
+import io.gravitee.gateway.api.stream.SimpleReadWriteStream;
 import io.gravitee.gateway.api.stream.exception.TransformationException;
 import io.gravitee.policy.api.PolicyChain;
 import io.gravitee.policy.api.PolicyConfiguration;
@@ -33,16 +34,66 @@ import io.gravitee.policy.api.annotations.OnRequest;
 import io.gravitee.policy.api.annotations.OnRequestContent;
 import io.gravitee.policy.api.annotations.OnResponse;
 import io.gravitee.policy.api.annotations.OnResponseContent;
+import io.gravitee.policy.javascript.cache.CachedScript;
+import io.gravitee.policy.javascript.cache.OutputCache;
+import io.gravitee.policy.javascript.cache.SharedCache;
+import io.gravitee.policy.javascript.configuration.ContentMode;
+import io.gravitee.policy.javascript.configuration.ExecutionMode;
 import io.gravitee.policy.javascript.configuration.JavaScriptPolicyConfiguration;
-import io.gravitee.policy.javascript.model.ContentAwareRequest;
-import io.gravitee.policy.javascript.model.ContentAwareResponse;
+import io.gravitee.policy.javascript.configuration.RecordFormat;
+import io.gravitee.policy.javascript.configuration.Rule;
+import io.gravitee.policy.javascript.configuration.ScriptEngineType;
+import io.gravitee.policy.javascript.context.PooledScriptContext;
+import io.gravitee.policy.javascript.context.ScriptContextPool;
+import io.gravitee.policy.javascript.diagnostics.BodyCapture;
+import io.gravitee.policy.javascript.encoding.ContentCoding;
+import io.gravitee.policy.javascript.encoding.ContentDecoder;
+import io.gravitee.policy.javascript.encoding.ContentEncoder;
+import io.gravitee.policy.javascript.engine.Script;
+import io.gravitee.policy.javascript.execution.AsyncExecution;
+import io.gravitee.policy.javascript.execution.CallerContext;
+import io.gravitee.policy.javascript.execution.ScriptExecutor;
+import io.gravitee.policy.javascript.execution.ScriptTimeoutException;
+import io.gravitee.policy.javascript.execution.ScriptWatchdog;
+import io.gravitee.policy.javascript.json.JsonViews;
+import io.gravitee.policy.javascript.metrics.ScriptMetrics;
+import io.gravitee.policy.javascript.model.BodyRecord;
+import io.gravitee.policy.javascript.model.ContentStream;
+import io.gravitee.policy.javascript.model.Crypto;
+import io.gravitee.policy.javascript.modules.ModuleLoader;
+import io.gravitee.policy.javascript.modules.ScriptModules;
+import io.gravitee.policy.javascript.records.RecordSplitter;
+import io.gravitee.policy.javascript.rules.ConditionMatcher;
+import io.gravitee.policy.javascript.rules.Rules;
+import io.gravitee.policy.javascript.utils.Digests;
+import io.gravitee.policy.javascript.utils.JmxUtils;
+import io.gravitee.policy.javascript.utils.ScriptValues;
+import io.gravitee.policy.javascript.warmup.ScriptWarmUp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
-import java.util.Optional;
-import java.util.Random;
+import javax.management.ObjectName;
+import javax.script.ScriptException;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
 
 /**
  * @author David BRASSELY (david.brassely at graviteesource.com)
@@ -53,61 +104,354 @@ import java.util.concurrent.ConcurrentMap;
  */
 public class JavaScriptPolicy {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(JavaScriptPolicy.class);
+
     private final JavaScriptPolicyConfiguration javaScriptPolicyConfiguration;
 
+    private final ConditionMatcher onRequestMatcher;
+    private final ConditionMatcher onResponseMatcher;
+    private final ConditionMatcher onRequestContentMatcher;
+    private final ConditionMatcher onResponseContentMatcher;
+
     private final static String REQUEST_VARIABLE_NAME = "request";
     private final static String RESPONSE_VARIABLE_NAME = "response";
     private final static String CONTEXT_VARIABLE_NAME = "context";
     private final static String RESULT_VARIABLE_NAME = "result";
-    private final static String SCRIPT_ENGINE_NAME = "nashorn";
+    private final static String STREAM_VARIABLE_NAME = "stream";
+    private final static String CRYPTO_VARIABLE_NAME = "crypto";
+    private final static String CACHE_VARIABLE_NAME = "cache";
+    private final static String DONE_VARIABLE_NAME = "done";
+    private final static String SET_TIMEOUT_VARIABLE_NAME = "setTimeout";
+    private final static String CLEAR_TIMEOUT_VARIABLE_NAME = "clearTimeout";
+    private final static String RECORDS_VARIABLE_NAME = "records";
+    private final static String REQUIRE_VARIABLE_NAME = "require";
+
+    private final static int SCRIPT_CACHE_MAX_SIZE = Integer.getInteger("gravitee.policy.javascript.cache.maxSize", 1000);
+    private final static String SCRIPT_STORE_DIRECTORY = System.getProperty("gravitee.policy.javascript.cache.directory");
+
+    private final static String MODULE_DIRECTORY = System.getProperty("gravitee.policy.javascript.modules.directory");
+
+    // Shared modules, whose sources are read once for the whole gateway
+    private static final ScriptModules MODULES =
+            new ScriptModules(MODULE_DIRECTORY != null ? Paths.get(MODULE_DIRECTORY) : null);
+
+    // Gateway threads which may run scripts at once, besides the workers: the event loops, two per processor
+    private final static int EVENT_LOOP_THREADS = 2 * Runtime.getRuntime().availableProcessors();
+
+    private final static int WORKER_MAX_THREADS = Integer.getInteger("gravitee.policy.javascript.worker.maxThreads",
+            EVENT_LOOP_THREADS);
+    private final static int WORKER_QUEUE_SIZE = Integer.getInteger("gravitee.policy.javascript.worker.queueSize", 1000);
+
+    // A context for each thread which may run a script at once: the event loops, the workers and the warm-up thread
+    private final static int CONTEXT_POOL_MAX_SIZE = Integer.getInteger("gravitee.policy.javascript.pool.maxSize",
+            EVENT_LOOP_THREADS + WORKER_MAX_THREADS + 1);
+    private final static long CONTEXT_POOL_ACQUIRE_TIMEOUT = Long.getLong("gravitee.policy.javascript.pool.acquireTimeout", 0L);
+
+    // Time after which a streamed body not receiving any chunk gives its script context back
+    private final static long STREAM_IDLE_TIMEOUT = Long.getLong("gravitee.policy.javascript.stream.idleTimeout", 60000L);
+
+    // Engines, and their resources, are only created once used by a policy
+    private static final ConcurrentMap<ScriptEngineType, ScriptRuntime> RUNTIMES = new ConcurrentHashMap<>();
+
+    private final static int WATCHDOG_MAX_THREADS = Integer.getInteger("gravitee.policy.javascript.watchdog.maxThreads",
+            2 * CONTEXT_POOL_MAX_SIZE);
+
+    // Runaway evaluations of a script (Nashorn only) after which its next evaluations are rejected
+    private final static int WATCHDOG_MAX_RUNAWAYS_PER_SCRIPT = Integer.getInteger(
+            "gravitee.policy.javascript.watchdog.maxRunawaysPerScript", 2);
+
+    private static final ScriptWatchdog WATCHDOG = new ScriptWatchdog(WATCHDOG_MAX_THREADS,
+            WATCHDOG_MAX_RUNAWAYS_PER_SCRIPT);
+
+    private static final ScriptExecutor EXECUTOR = new ScriptExecutor(WORKER_MAX_THREADS, WORKER_QUEUE_SIZE);
+
+    private final static int SHARED_CACHE_MAX_SIZE = Integer.getInteger("gravitee.policy.javascript.sharedCache.maxSize", 1000);
+    private final static long SHARED_CACHE_TTL = Long.getLong("gravitee.policy.javascript.sharedCache.ttl", 0L);
+    private final static long SHARED_CACHE_LOAD_TIMEOUT = Long.getLong("gravitee.policy.javascript.sharedCache.loadTimeout",
+            5000L);
+
+    // Time after which the cache of an API no script has run for, ie. an undeployed API, is removed
+    private final static long SHARED_CACHE_IDLE_TIMEOUT = Long.getLong("gravitee.policy.javascript.sharedCache.idleTimeout",
+            3600000L);
+
+    // Caches shared by the scripts of an API, by API
+    private static final ConcurrentMap<String, SharedCache> SHARED_CACHES = new ConcurrentHashMap<>();
+
+    // Cache of the warm-up executions, kept apart from the ones of the APIs and not registered in JMX
+    private static final SharedCache WARM_UP_SHARED_CACHE = new SharedCache(SHARED_CACHE_MAX_SIZE, SHARED_CACHE_TTL,
+            SHARED_CACHE_LOAD_TIMEOUT);
+
+    private final static int CALLBACK_MAX_THREADS = Integer.getInteger("gravitee.policy.javascript.async.maxThreads",
+            CONTEXT_POOL_MAX_SIZE);
+
+    // Fires the timers and enforces the timeout of asynchronous scripts, whose callbacks are run by their own threads
+    private static final ScheduledThreadPoolExecutor SCHEDULER = newScheduler();
+    private static final ThreadPoolExecutor CALLBACK_EXECUTOR = newCallbackExecutor(CALLBACK_MAX_THREADS);
+
+    private final static long WARM_UP_TIMEOUT = Long.getLong("gravitee.policy.javascript.warmUp.timeout", 10000L);
+
+    // Keys of the configurations already compiled and warmed up
+    private static final Set<String> WARMED_UP = ConcurrentHashMap.newKeySet();
 
-    private static final ScriptEngineManager SCRIPT_ENGINE_MANAGER = new ScriptEngineManager();
-    private static final ScriptEngine SCRIPT_ENGINE = SCRIPT_ENGINE_MANAGER.getEngineByName(SCRIPT_ENGINE_NAME);
+    private static final ThreadPoolExecutor WARM_UP_EXECUTOR = newWarmUpExecutor();
+
+    private final static long OUTPUT_CACHE_MAX_BYTES = Long.getLong("gravitee.policy.javascript.memoize.maxBytes",
+            64L * 1024 * 1024);
+
+    // Memoized outputs of the content scripts, shared by all the APIs
+    private static final OutputCache OUTPUT_CACHE = new OutputCache(OUTPUT_CACHE_MAX_BYTES);
+
+    private final static int BODY_CAPTURE_QUEUE_SIZE = Integer.getInteger("gravitee.policy.javascript.capture.queueSize", 100);
+
+    private static final BodyCapture BODY_CAPTURE = new BodyCapture(BODY_CAPTURE_QUEUE_SIZE);
+
+    static {
+        JmxUtils.register(WATCHDOG, "type=ScriptWatchdog");
+        JmxUtils.register(EXECUTOR, "type=ScriptExecutor");
+        JmxUtils.register(BODY_CAPTURE, "type=BodyCapture");
+        JmxUtils.register(OUTPUT_CACHE, "type=OutputCache");
+
+        if (SHARED_CACHE_IDLE_TIMEOUT > 0) {
+            long period = Math.min(SHARED_CACHE_IDLE_TIMEOUT, 60000L);
+            SCHEDULER.scheduleWithFixedDelay(JavaScriptPolicy::removeIdleSharedCaches, period, period,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
 
-    private static final ConcurrentMap<String, Class<?>> sources = new ConcurrentHashMap<>();
-    
     public JavaScriptPolicy(PolicyConfiguration javaScriptPolicyConfiguration) {
         this.javaScriptPolicyConfiguration = (JavaScriptPolicyConfiguration)javaScriptPolicyConfiguration;
+        this.onRequestMatcher = ConditionMatcher.of(this.javaScriptPolicyConfiguration.getOnRequestCondition());
+        this.onResponseMatcher = ConditionMatcher.of(this.javaScriptPolicyConfiguration.getOnResponseCondition());
+        this.onRequestContentMatcher = ConditionMatcher.of(this.javaScriptPolicyConfiguration.getOnRequestContentCondition());
+        this.onResponseContentMatcher = ConditionMatcher.of(this.javaScriptPolicyConfiguration.getOnResponseContentCondition());
+
+        // Compile, and warm up, the scripts once per configuration, so that the first requests pay for neither
+        if (WARMED_UP.add(warmUpKey())) {
+            if (WARMED_UP.size() > SCRIPT_CACHE_MAX_SIZE) {
+                WARMED_UP.clear();
+            }
+            boolean valid = compile(Phase.REQUEST, this.javaScriptPolicyConfiguration.getOnRequestScript())
+                    & compile(Phase.RESPONSE, this.javaScriptPolicyConfiguration.getOnResponseScript())
+                    & compile(Phase.REQUEST_CONTENT, this.javaScriptPolicyConfiguration.getOnRequestContentScript())
+                    & compile(Phase.RESPONSE_CONTENT, this.javaScriptPolicyConfiguration.getOnResponseContentScript());
+
+            final int iterations = this.javaScriptPolicyConfiguration.getWarmUpIterations();
+            if (valid && iterations > 0) {
+                WARM_UP_EXECUTOR.execute(() -> new ScriptWarmUp(this, warmUpBody(), WARM_UP_TIMEOUT).run(iterations));
+            }
+        }
+    }
+
+    private static void initScriptContext(PooledScriptContext scriptContext, ScriptEngineType engineType) {
+        // Variables are owned by the script context and reused across invocations
+        scriptContext.setVariable(REQUEST_VARIABLE_NAME, scriptContext.getRequest());
+        scriptContext.setVariable(RESPONSE_VARIABLE_NAME, scriptContext.getResponse());
+        scriptContext.setVariable(RESULT_VARIABLE_NAME, scriptContext.getResult());
+        scriptContext.setVariable(CONTEXT_VARIABLE_NAME, null);
+        scriptContext.setVariable(STREAM_VARIABLE_NAME, null);
+        scriptContext.setVariable(CRYPTO_VARIABLE_NAME, Crypto.INSTANCE);
+        scriptContext.setVariable(CACHE_VARIABLE_NAME, null);
+        scriptContext.setVariable(RECORDS_VARIABLE_NAME, null);
+        scriptContext.setVariable(REQUIRE_VARIABLE_NAME,
+                new ModuleLoader(scriptContext, name -> compileModule(engineType, name)));
+        initAsyncVariables(scriptContext);
+    }
+
+    /**
+     * Returns the compiled form of the given shared module, which is compiled once per engine.
+     */
+    private static Script compileModule(ScriptEngineType engineType, String name) {
+        try {
+            return RUNTIMES.get(engineType).getScriptCache().get(MODULES.source(name)).getScript();
+        } catch (ScriptException ex) {
+            throw new IllegalStateException("Unable to compile module " + name + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    private static void initAsyncVariables(PooledScriptContext scriptContext) {
+        scriptContext.setVariable(DONE_VARIABLE_NAME, null);
+        scriptContext.setVariable(SET_TIMEOUT_VARIABLE_NAME, null);
+        scriptContext.setVariable(CLEAR_TIMEOUT_VARIABLE_NAME, null);
+    }
+
+    private static ScheduledThreadPoolExecutor newScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "gravitee-javascript-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Most timeouts are cancelled, do not retain them until they expire
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    private static ThreadPoolExecutor newCallbackExecutor(int maxThreads) {
+        AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "gravitee-javascript-callback-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ThreadPoolExecutor newWarmUpExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "gravitee-javascript-warm-up");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private ScriptRuntime runtime() {
+        ScriptEngineType engineType = javaScriptPolicyConfiguration.getEngine();
+        ScriptRuntime runtime = RUNTIMES.get(engineType);
+        if (runtime == null) {
+            runtime = RUNTIMES.computeIfAbsent(engineType, type -> new ScriptRuntime(type,
+                    scriptContext -> initScriptContext(scriptContext, type), SCRIPT_CACHE_MAX_SIZE, CONTEXT_POOL_MAX_SIZE,
+                    CONTEXT_POOL_ACQUIRE_TIMEOUT,
+                    SCRIPT_STORE_DIRECTORY != null ? Paths.get(SCRIPT_STORE_DIRECTORY) : null));
+        }
+        return runtime;
+    }
+
+    private String warmUpKey() {
+        return javaScriptPolicyConfiguration.getEngine() + ":" + javaScriptPolicyConfiguration.getWarmUpIterations()
+                + ':' + digest(javaScriptPolicyConfiguration.getOnRequestScript())
+                + ':' + digest(javaScriptPolicyConfiguration.getOnResponseScript())
+                + ':' + digest(javaScriptPolicyConfiguration.getOnRequestContentScript())
+                + ':' + digest(javaScriptPolicyConfiguration.getOnResponseContentScript());
+    }
+
+    private String digest(String script) {
+        return (script == null || script.trim().isEmpty()) ? "" : runtime().getScriptCache().digest(script);
+    }
+
+    /**
+     * Compiles the given script, if any, and returns whether it is valid. Compilation errors are logged here, before
+     * any traffic, and reported again to the policy chain when the script is executed.
+     */
+    private boolean compile(Phase phase, String script) {
+        if (script != null && !script.trim().isEmpty()) {
+            try {
+                runtime().getScriptCache().get(script);
+            } catch (Exception ex) {
+                LOGGER.error("Unable to compile the javascript {} script: {}", phase, ex.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String warmUpBody() {
+        if (javaScriptPolicyConfiguration.getWarmUpBody() != null) {
+            return javaScriptPolicyConfiguration.getWarmUpBody();
+        } else if (javaScriptPolicyConfiguration.getContentMode() == ContentMode.RECORDS) {
+            return javaScriptPolicyConfiguration.getRecordFormat() == RecordFormat.JSON_ARRAY ? "[{}]" : "{}\n";
+        }
+        return "{}";
     }
 
     @OnRequest
     public void onRequest(Request request, Response response, ExecutionContext executionContext, PolicyChain policyChain) {
-        executeScript(request, response, executionContext, policyChain, javaScriptPolicyConfiguration.getOnRequestScript());
+        if (isInvalid(onRequestMatcher)) {
+            policyChain.failWith(invalidCondition(onRequestMatcher));
+        } else if (applyRules(javaScriptPolicyConfiguration.getOnRequestRules(), request.headers(), policyChain)) {
+            if (matches(onRequestMatcher, request, request.headers())) {
+                executeScript(Phase.REQUEST, request, response, executionContext, policyChain,
+                        javaScriptPolicyConfiguration.getOnRequestScript());
+            } else {
+                policyChain.doNext(request, response);
+            }
+        }
     }
 
     @OnResponse
     public void onResponse(Request request, Response response, ExecutionContext executionContext, PolicyChain policyChain) {
-        executeScript(request, response, executionContext, policyChain, javaScriptPolicyConfiguration.getOnResponseScript());
+        if (isInvalid(onResponseMatcher)) {
+            policyChain.failWith(invalidCondition(onResponseMatcher));
+        } else if (applyRules(javaScriptPolicyConfiguration.getOnResponseRules(), response.headers(), policyChain)) {
+            if (matches(onResponseMatcher, request, response.headers())) {
+                executeScript(Phase.RESPONSE, request, response, executionContext, policyChain,
+                        javaScriptPolicyConfiguration.getOnResponseScript());
+            } else {
+                policyChain.doNext(request, response);
+            }
+        }
+    }
+
+    /**
+     * Runs the declarative rules of a phase, and returns <code>false</code> if a rule rejected the request, in which
+     * case the script is not run.
+     */
+    private static boolean applyRules(List<Rule> rules, HttpHeaders headers, PolicyChain policyChain) {
+        if (rules != null && !rules.isEmpty()) {
+            io.gravitee.policy.api.PolicyResult failure = Rules.apply(rules, headers);
+            if (failure != null) {
+                policyChain.failWith(failure);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the script of a phase runs for the given request, that is whether the phase has no condition or
+     * its condition matches.
+     */
+    private static boolean matches(ConditionMatcher matcher, Request request, HttpHeaders headers) {
+        return matcher == null || matcher.matches(request.path(), request.method(), headers);
+    }
+
+    /**
+     * Returns whether the condition of a phase is invalid, in which case the phase fails every request.
+     */
+    private static boolean isInvalid(ConditionMatcher matcher) {
+        return matcher != null && matcher.getError() != null;
+    }
+
+    private static io.gravitee.policy.api.PolicyResult invalidCondition(ConditionMatcher matcher) {
+        return io.gravitee.policy.api.PolicyResult.failure(HttpStatusCode.INTERNAL_SERVER_ERROR_500,
+                "Invalid script condition: " + matcher.getError());
     }
 
     @OnResponseContent
-    public ReadWriteStream onResponseContent(Request request, Response response, ExecutionContext executionContext,
-                                             PolicyChain policyChain) {
+    public ReadWriteStream<Buffer> onResponseContent(Request request, Response response,
+                                                     ExecutionContext executionContext, PolicyChain policyChain) {
         String script = javaScriptPolicyConfiguration.getOnResponseContentScript();
+        if (isInvalid(onResponseContentMatcher)) {
+            return new FailedContentStream(policyChain, invalidCondition(onResponseContentMatcher));
+        }
+
+        // Nothing is buffered, nor streamed through a script, when the condition does not match
+        if (script != null && !script.trim().isEmpty() && matches(onResponseContentMatcher, request, response.headers())) {
+            if (javaScriptPolicyConfiguration.getContentMode() == ContentMode.STREAMING) {
+                removeContentLength(response.headers());
+                return new StreamingScriptStream(Phase.RESPONSE_CONTENT, request, response, executionContext, policyChain, script);
+            } else if (javaScriptPolicyConfiguration.getContentMode() == ContentMode.RECORDS) {
+                removeContentLength(response.headers());
+                return new RecordScriptStream(Phase.RESPONSE_CONTENT, request, response, executionContext, policyChain, script);
+            }
 
-        if (script != null && !script.trim().isEmpty()) {
             return TransformableResponseStreamBuilder.on(response).chain(policyChain).transform(
                 buffer -> {
                     try {
-                        System.out.print(buffer.toString().replace('\n',' '));
-                        final String content = executeStreamScript(
-                            new ContentAwareRequest(request, null),
-                            new ContentAwareResponse(response, buffer.toString()),
-                            executionContext,
-                            script);
-                        return Buffer.buffer(content);
+                        captureBody(Phase.RESPONSE_CONTENT, (Buffer) buffer, executionContext);
+                        return transformContent(Phase.RESPONSE_CONTENT, request, response, (Buffer) buffer,
+                                executionContext, script);
                     } catch (PolicyFailureException ex) {
-                        if (ex.getResult().getContentType() != null) {
-                            policyChain.streamFailWith(io.gravitee.policy.api.PolicyResult.failure(
-                                ex.getResult().getCode(), ex.getResult().getError(),ex.getResult().getContentType()));
-                        } else {
-                            policyChain.streamFailWith(io.gravitee.policy.api.PolicyResult.failure(
-                                ex.getResult().getCode(), ex.getResult().getError()));
-                        }
+                        policyChain.streamFailWith(ex.getResult());
+                    } catch (ScriptTimeoutException ex) {
+                        policyChain.streamFailWith(toFailure(ex));
+                    } catch (TimeoutException | RejectedExecutionException ex) {
+                        policyChain.streamFailWith(unavailable(ex));
                     } catch (Throwable t) {
-                        StringWriter errors = new StringWriter();
-                        t.printStackTrace(new PrintWriter(errors));
-                        throw new TransformationException("Unable to run javascript: " + t.getMessage() +"\ncaused by:" + t.getCause() + "\nstacktrace:" + errors, t);
+                        throw toTransformationException(t);
                     }
                     return null;
                 }
@@ -117,32 +461,37 @@ public class JavaScriptPolicy {
     }
 
     @OnRequestContent
-    public ReadWriteStream onRequestContent(Request request, Response response, ExecutionContext executionContext,
-                                            PolicyChain policyChain) {
+    public ReadWriteStream<Buffer> onRequestContent(Request request, Response response,
+                                                    ExecutionContext executionContext, PolicyChain policyChain) {
         String script = javaScriptPolicyConfiguration.getOnRequestContentScript();
+        if (isInvalid(onRequestContentMatcher)) {
+            return new FailedContentStream(policyChain, invalidCondition(onRequestContentMatcher));
+        }
+
+        // Nothing is buffered, nor streamed through a script, when the condition does not match
+        if (script != null && !script.trim().isEmpty() && matches(onRequestContentMatcher, request, request.headers())) {
+            if (javaScriptPolicyConfiguration.getContentMode() == ContentMode.STREAMING) {
+                removeContentLength(request.headers());
+                return new StreamingScriptStream(Phase.REQUEST_CONTENT, request, response, executionContext, policyChain, script);
+            } else if (javaScriptPolicyConfiguration.getContentMode() == ContentMode.RECORDS) {
+                removeContentLength(request.headers());
+                return new RecordScriptStream(Phase.REQUEST_CONTENT, request, response, executionContext, policyChain, script);
+            }
 
-        if (script != null && !script.trim().isEmpty()) {
             return TransformableRequestStreamBuilder.on(request).chain(policyChain).transform(
                 buffer -> {
                     try {
-                        System.out.print(buffer.toString().replace('\n',' '));
-                        final String content = executeStreamScript(
-                            new ContentAwareRequest(request, buffer.toString()),
-                            new ContentAwareResponse(response, null),
-                                executionContext,
-                                script);
-
-                            return Buffer.buffer(content);
+                        captureBody(Phase.REQUEST_CONTENT, (Buffer) buffer, executionContext);
+                        return transformContent(Phase.REQUEST_CONTENT, request, response, (Buffer) buffer,
+                                executionContext, script);
                     } catch (PolicyFailureException ex) {
-                        if (ex.getResult().getContentType() != null) {
-                            policyChain.streamFailWith(io.gravitee.policy.api.PolicyResult.failure(
-                                ex.getResult().getCode(), ex.getResult().getError(),ex.getResult().getContentType()));
-                        } else {
-                            policyChain.streamFailWith(io.gravitee.policy.api.PolicyResult.failure(
-                                ex.getResult().getCode(), ex.getResult().getError()));
-                        }
+                        policyChain.streamFailWith(ex.getResult());
+                    } catch (ScriptTimeoutException ex) {
+                        policyChain.streamFailWith(toFailure(ex));
+                    } catch (TimeoutException | RejectedExecutionException ex) {
+                        policyChain.streamFailWith(unavailable(ex));
                     } catch (Throwable t) {
-                        throw new TransformationException("Unable to run Groovy script: " + t.getMessage(), t);
+                        throw toTransformationException(t);
                     }
                     return null;
                 }
@@ -152,73 +501,1085 @@ public class JavaScriptPolicy {
         return null;
     }
 
-    private String executeScript(Request request, Response response, ExecutionContext executionContext,
-                                       String script, PolicyResult policyResult) throws ScriptException {
+    private void captureBody(Phase phase, Buffer body, ExecutionContext executionContext) {
+        if (javaScriptPolicyConfiguration.isBodyCapture() && !ScriptWarmUp.isWarmUp(executionContext)) {
+            BODY_CAPTURE.capture(String.valueOf(executionContext.getAttribute(ExecutionContext.ATTR_API)), phase, body,
+                    javaScriptPolicyConfiguration.getBodyCaptureSampleRate(),
+                    javaScriptPolicyConfiguration.getBodyCaptureMaxSize());
+        }
+    }
 
-        Bindings bindings = SCRIPT_ENGINE.createBindings();
-        bindings.put(REQUEST_VARIABLE_NAME, new ContentAwareRequest(request, null));
-        bindings.put(RESPONSE_VARIABLE_NAME, new ContentAwareResponse(response, null));
-        bindings.put(CONTEXT_VARIABLE_NAME, executionContext);
-        bindings.put(RESULT_VARIABLE_NAME, policyResult);
+    /**
+     * Starts the capture of a body streamed through a script, or returns <code>null</code> if it is not captured.
+     */
+    private BodyCapture.Capture startCapture(Phase phase, ExecutionContext executionContext) {
+        if (javaScriptPolicyConfiguration.isBodyCapture() && !ScriptWarmUp.isWarmUp(executionContext)) {
+            return BODY_CAPTURE.start(String.valueOf(executionContext.getAttribute(ExecutionContext.ATTR_API)), phase,
+                    javaScriptPolicyConfiguration.getBodyCaptureSampleRate(),
+                    javaScriptPolicyConfiguration.getBodyCaptureMaxSize());
+        }
+        return null;
+    }
 
-        // And run script
-        return Optional.ofNullable(SCRIPT_ENGINE.eval(script, bindings))
-                .map(Object::toString)
-                .orElse(null);
+    /**
+     * Runs the content script of the given phase against the given content, and returns the content to send. When
+     * memoization is enabled, the output of the script, or the failure it raised, is reused for identical inputs: the
+     * contents and outputs larger than the memoization max size are neither hashed nor copied into the cache.
+     */
+    private Buffer transformContent(Phase phase, Request request, Response response, Buffer content,
+                                    ExecutionContext executionContext, String script) throws Exception {
+        final boolean requestContent = phase == Phase.REQUEST_CONTENT;
+        if (!javaScriptPolicyConfiguration.isMemoize() || ScriptWarmUp.isWarmUp(executionContext)
+                || !memoizable(content)) {
+            return executeScript(phase, request, requestContent ? content : null, response,
+                    requestContent ? null : content, executionContext, script);
+        }
+
+        final String key = memoizationKey(phase, request, response, content, executionContext, script);
+        final OutputCache.Output memoized = OUTPUT_CACHE.get(key, content.length());
+        executionContext.setAttribute(phase.attribute("memoized"), memoized != null);
+        if (memoized != null) {
+            if (memoized.getFailure() != null) {
+                throw new PolicyFailureException(memoized.getFailure());
+            }
+            return Buffer.buffer(memoized.getContent());
+        }
+
+        try {
+            Buffer output = executeScript(phase, request, requestContent ? content : null, response,
+                    requestContent ? null : content, executionContext, script);
+            if (memoizable(output)) {
+                OUTPUT_CACHE.put(key, OutputCache.Output.content(output.getBytes()),
+                        javaScriptPolicyConfiguration.getMemoizeTtl());
+            }
+            return output;
+        } catch (PolicyFailureException ex) {
+            OUTPUT_CACHE.put(key, OutputCache.Output.failure(ex.getResult()),
+                    javaScriptPolicyConfiguration.getMemoizeTtl());
+            throw ex;
+        }
+    }
+
+    private boolean memoizable(Buffer buffer) {
+        final int maxSize = javaScriptPolicyConfiguration.getMemoizeMaxSize();
+        return maxSize <= 0 || buffer.length() <= maxSize;
+    }
+
+    /**
+     * Returns the key of the given content, made of the digest of the inputs the script may read: the request line
+     * (including its query string), the memoized headers, the status of the response for the response content, and
+     * the digest of the content itself.
+     */
+    private String memoizationKey(Phase phase, Request request, Response response, Buffer content,
+                                  ExecutionContext executionContext, String script) {
+        final StringBuilder inputs = new StringBuilder()
+                .append(executionContext.getAttribute(ExecutionContext.ATTR_API)).append('\n')
+                .append(phase).append(' ').append(runtime().getScriptCache().digest(script)).append('\n')
+                .append(request.method()).append(' ').append(request.uri());
+        if (phase == Phase.RESPONSE_CONTENT) {
+            inputs.append('\n').append(response.status());
+        }
+        for (String header : javaScriptPolicyConfiguration.getMemoizeHeaders()) {
+            inputs.append('\n').append(header).append(": ").append(request.headers().get(header));
+        }
+        return Digests.sha1(inputs.toString()) + ':' + Digests.sha1(content);
+    }
+
+    /**
+     * Runs the script against the given request and response, and returns the content to send when one of them holds
+     * a content, or <code>null</code>.
+     */
+    private Buffer executeScript(Phase phase, Request request, Buffer requestContent, Response response,
+                                 Buffer responseContent, ExecutionContext executionContext, String script)
+            throws Exception {
+        final ScriptRuntime runtime = runtime();
+        final long start = System.nanoTime();
+        long compileTime = -1;
+        String digest = null;
+        ScriptMetrics.Outcome outcome = ScriptMetrics.Outcome.ERROR;
+        Buffer output = null;
+        final ContentCoding coding = contentCoding(phase, request, response);
+
+        try {
+            CachedScript cachedScript = runtime.getScriptCache().get(script);
+            Script compiledScript = cachedScript.getScript();
+            digest = cachedScript.getDigest();
+            compileTime = System.nanoTime() - start;
+
+            PooledScriptContext scriptContext = runtime.getContextPool().acquire();
+            boolean aborted = false;
+            try {
+                bind(scriptContext, request, requestContent, response, responseContent, coding, executionContext);
+
+                // And run script
+                Object content;
+                try {
+                    content = WATCHDOG.run(digest, javaScriptPolicyConfiguration.getMaxExecutionTime(),
+                            () -> scriptContext.execute(compiledScript), scriptContext::cancel,
+                            scriptContext.isCancellable());
+                } catch (ScriptTimeoutException ex) {
+                    aborted = true;
+                    throw ex;
+                }
+                checkResult(scriptContext.getResult());
+
+                if (requestContent != null) {
+                    output = toContent(content, requestContent, scriptContext.getRequest().isContent(content));
+                } else if (responseContent != null) {
+                    output = toContent(content, responseContent, scriptContext.getResponse().isContent(content));
+                }
+
+                // The body was decoded for the script: its output is encoded again, unless it is the body itself
+                if (coding != null && output != requestContent && output != responseContent) {
+                    output = encode(coding, output);
+                }
+
+                outcome = ScriptMetrics.Outcome.SUCCESS;
+                return output;
+            } finally {
+                release(runtime.getContextPool(), scriptContext, aborted);
+            }
+        } catch (PolicyFailureException ex) {
+            outcome = ScriptMetrics.Outcome.FAILURE;
+            throw ex;
+        } catch (ScriptTimeoutException ex) {
+            outcome = ScriptMetrics.Outcome.TIMEOUT;
+            throw ex;
+        } catch (TimeoutException | RejectedExecutionException ex) {
+            outcome = ScriptMetrics.Outcome.REJECTED;
+            throw ex;
+        } finally {
+            if (compileTime < 0) {
+                compileTime = System.nanoTime() - start;
+                digest = runtime.getScriptCache().digest(script);
+            }
+            recordMetrics(executionContext, phase, digest, outcome, compileTime,
+                    System.nanoTime() - start - compileTime,
+                    length(requestContent != null ? requestContent : responseContent), length(output));
+        }
+    }
+
+    /**
+     * Returns the context to the pool, unless its script has been aborted: as it may still be running, the context is
+     * discarded.
+     */
+    private void release(ScriptContextPool pool, PooledScriptContext scriptContext, boolean aborted) {
+        if (aborted) {
+            pool.discard(scriptContext);
+        } else {
+            pool.release(scriptContext, javaScriptPolicyConfiguration.getContextResetPolicy());
+        }
+    }
+
+    /**
+     * Records an execution of the script of the given phase, both in its {@link ScriptMetrics} and in the execution
+     * context attributes of the current request (ie. <code>gravitee.attribute.javascript.request.execution-time</code>)
+     * so that they can be used by the following policies and reporters. Warm-up executions are not recorded in the
+     * {@link ScriptMetrics}.
+     */
+    private static void recordMetrics(ExecutionContext executionContext, Phase phase, String digest,
+                                      ScriptMetrics.Outcome outcome, long compileTime, long executionTime,
+                                      long bytesIn, long bytesOut) {
+        if (!ScriptWarmUp.isWarmUp(executionContext)) {
+            ScriptMetrics.of(phase, digest).record(outcome, compileTime, executionTime, bytesIn, bytesOut);
+        }
+
+        executionContext.setAttribute(phase.attribute("script"), digest);
+        executionContext.setAttribute(phase.attribute("outcome"), outcome.name());
+        executionContext.setAttribute(phase.attribute("compile-time"), TimeUnit.NANOSECONDS.toMicros(compileTime));
+        executionContext.setAttribute(phase.attribute("execution-time"), TimeUnit.NANOSECONDS.toMicros(executionTime));
+        if (bytesIn >= 0) {
+            executionContext.setAttribute(phase.attribute("bytes-in"), bytesIn);
+            executionContext.setAttribute(phase.attribute("bytes-out"), Math.max(bytesOut, 0));
+        }
+    }
+
+    /**
+     * Returns the coding of the body of the given content phase when content decoding is enabled, or
+     * <code>null</code> when the body is to be given to the script as is.
+     */
+    private ContentCoding contentCoding(Phase phase, Request request, Response response) {
+        if (!javaScriptPolicyConfiguration.isDecodeContent()) {
+            return null;
+        } else if (phase == Phase.REQUEST_CONTENT) {
+            return ContentCoding.of(request.headers().getFirst(HttpHeaders.CONTENT_ENCODING));
+        } else if (phase == Phase.RESPONSE_CONTENT) {
+            return ContentCoding.of(response.headers().getFirst(HttpHeaders.CONTENT_ENCODING));
+        }
+        return null;
+    }
+
+    private static Buffer encode(ContentCoding coding, Buffer content) {
+        ContentEncoder encoder = coding.newEncoder(Deflater.DEFAULT_COMPRESSION);
+        try {
+            Buffer encoded = encoder.encode(content, false);
+            return encoded.appendBuffer(encoder.finish());
+        } finally {
+            encoder.end();
+        }
+    }
+
+    private static long length(Buffer buffer) {
+        return buffer == null ? -1 : buffer.length();
     }
 
-    private String executeScript(Request request, Response response, ExecutionContext executionContext,
-                                 PolicyChain policyChain, String script) {
+    private void bind(PooledScriptContext scriptContext, Request request, Buffer requestContent,
+                      Response response, Buffer responseContent, ExecutionContext executionContext) {
+        bind(scriptContext, request, requestContent, response, responseContent, null, executionContext);
+    }
+
+    /**
+     * Binds the request and response, the content being encoded with the given coding if not <code>null</code>.
+     */
+    private void bind(PooledScriptContext scriptContext, Request request, Buffer requestContent,
+                      Response response, Buffer responseContent, ContentCoding coding,
+                      ExecutionContext executionContext) {
+        scriptContext.getRequest().reset(request, requestContent, requestContent != null ? coding : null);
+        scriptContext.getResponse().reset(response, responseContent, responseContent != null ? coding : null);
+        scriptContext.setVariable(CONTEXT_VARIABLE_NAME, executionContext);
+        scriptContext.setVariable(CACHE_VARIABLE_NAME, sharedCache(executionContext));
+    }
+
+    private static SharedCache sharedCache(ExecutionContext executionContext) {
+        if (ScriptWarmUp.isWarmUp(executionContext)) {
+            return WARM_UP_SHARED_CACHE;
+        }
+
+        final String api = String.valueOf(executionContext.getAttribute(ExecutionContext.ATTR_API));
+        SharedCache cache = SHARED_CACHES.get(api);
+        if (cache == null) {
+            cache = SHARED_CACHES.computeIfAbsent(api, key -> {
+                SharedCache created = new SharedCache(SHARED_CACHE_MAX_SIZE, SHARED_CACHE_TTL,
+                        SHARED_CACHE_LOAD_TIMEOUT);
+                JmxUtils.register(created, sharedCacheMBeanName(key));
+                return created;
+            });
+        }
+        cache.touch();
+        return cache;
+    }
+
+    /**
+     * Removes the caches no script has been run with for the idle timeout, along with their MBean. The policy is not
+     * notified when an API is undeployed: its cache is removed once idle instead.
+     */
+    private static void removeIdleSharedCaches() {
+        for (String api : SHARED_CACHES.keySet()) {
+            SHARED_CACHES.computeIfPresent(api, (key, cache) -> {
+                if (cache.getIdleTime() < SHARED_CACHE_IDLE_TIMEOUT) {
+                    return cache;
+                }
+                JmxUtils.unregister(sharedCacheMBeanName(key));
+                return null;
+            });
+        }
+    }
+
+    private static String sharedCacheMBeanName(String api) {
+        return "type=SharedCache,api=" + ObjectName.quote(api);
+    }
+
+    private void executeScript(Phase phase, Request request, Response response, ExecutionContext executionContext,
+                               PolicyChain policyChain, String script) {
         if (script == null || script.trim().isEmpty()) {
             policyChain.doNext(request, response);
+        } else if (javaScriptPolicyConfiguration.getExecutionMode() == ExecutionMode.WORKER) {
+            // The chain is resumed on the thread handling the request, rather than on the worker
+            PolicyChain callerChain = new CallerPolicyChain(policyChain, CallerContext.capture(Runnable::run));
+            try {
+                EXECUTOR.execute(String.valueOf(executionContext.getAttribute(ExecutionContext.ATTR_API)),
+                        javaScriptPolicyConfiguration.getMaxPendingExecutions(),
+                        () -> runScript(phase, request, response, executionContext, callerChain, script));
+            } catch (RejectedExecutionException ex) {
+                recordMetrics(executionContext, phase, runtime().getScriptCache().digest(script),
+                        ScriptMetrics.Outcome.REJECTED, 0, 0, -1, -1);
+                policyChain.failWith(unavailable(ex));
+            }
         } else {
+            runScript(phase, request, response, executionContext, policyChain, script);
+        }
+    }
+
+    /**
+     * Runs the script of a request or response phase, then resumes the policy chain.
+     */
+    private void runScript(Phase phase, Request request, Response response, ExecutionContext executionContext,
+                           PolicyChain policyChain, String script) {
+        if (javaScriptPolicyConfiguration.isAsync()) {
+            runAsyncScript(phase, request, response, executionContext, policyChain, script);
+            return;
+        }
+
+        try {
+            executeScript(phase, request, null, response, null, executionContext, script);
+            policyChain.doNext(request, response);
+        } catch (PolicyFailureException ex) {
+            policyChain.failWith(ex.getResult());
+        } catch (ScriptTimeoutException ex) {
+            policyChain.failWith(toFailure(ex));
+        } catch (TimeoutException | RejectedExecutionException ex) {
+            policyChain.failWith(unavailable(ex));
+        } catch (Throwable t) {
+            policyChain.failWith(io.gravitee.policy.api.PolicyResult.failure(t.getMessage()));
+        }
+    }
+
+    /**
+     * Runs an asynchronous script of a request or response phase: the script context is held, and the policy chain
+     * resumed, until the script calls <code>done()</code> or until the promise it returns settles.
+     *
+     * As the script context is held while waiting, ie. for a timer or an I/O, it is leased from the pool of held
+     * contexts so that pending asynchronous scripts do not leave the other scripts without a context. The script
+     * completes on a timer or callback thread: the chain is resumed on the context of the calling thread.
+     */
+    private void runAsyncScript(Phase phase, Request request, Response response, ExecutionContext executionContext,
+                                PolicyChain chain, String script) {
+        final PolicyChain policyChain = new CallerPolicyChain(chain, CallerContext.capture(Runnable::run));
+        final long start = System.nanoTime();
+        final ScriptRuntime runtime = runtime();
+        final CachedScript cachedScript;
+        final PooledScriptContext scriptContext;
+        final long compileTime;
+
+        try {
+            cachedScript = runtime.getScriptCache().get(script);
+            compileTime = System.nanoTime() - start;
+            scriptContext = runtime.getHeldContextPool().acquire();
+        } catch (Throwable t) {
+            long elapsed = System.nanoTime() - start;
+            recordMetrics(executionContext, phase, runtime.getScriptCache().digest(script),
+                    isRejection(t) ? ScriptMetrics.Outcome.REJECTED : ScriptMetrics.Outcome.ERROR, elapsed, 0, -1, -1);
+            policyChain.failWith(isRejection(t) ? unavailable(t)
+                    : io.gravitee.policy.api.PolicyResult.failure(t.getMessage()));
+            return;
+        }
+
+        AsyncExecution execution = new AsyncExecution(SCHEDULER, CALLBACK_EXECUTOR,
+                javaScriptPolicyConfiguration.getAsyncTimeout(),
+                task -> WATCHDOG.run(cachedScript.getDigest(), javaScriptPolicyConfiguration.getMaxExecutionTime(),
+                        task, scriptContext::cancel, scriptContext.isCancellable()),
+                scriptContext::cancel,
+                (error, abandoned) -> {
+                    ScriptMetrics.Outcome outcome;
+                    io.gravitee.policy.api.PolicyResult failure = null;
+                    if (error instanceof ScriptTimeoutException) {
+                        outcome = ScriptMetrics.Outcome.TIMEOUT;
+                        failure = toFailure((ScriptTimeoutException) error);
+                    } else if (isRejection(error)) {
+                        outcome = ScriptMetrics.Outcome.REJECTED;
+                        failure = unavailable(error);
+                    } else if (error != null) {
+                        outcome = ScriptMetrics.Outcome.ERROR;
+                        failure = io.gravitee.policy.api.PolicyResult.failure(error.getMessage());
+                    } else if (scriptContext.getResult().getState() == PolicyResult.State.FAILURE) {
+                        outcome = ScriptMetrics.Outcome.FAILURE;
+                        failure = toFailure(scriptContext.getResult());
+                    } else {
+                        outcome = ScriptMetrics.Outcome.SUCCESS;
+                    }
+
+                    if (!abandoned) {
+                        initAsyncVariables(scriptContext);
+                    }
+                    release(runtime.getHeldContextPool(), scriptContext, abandoned);
+                    recordMetrics(executionContext, phase, cachedScript.getDigest(), outcome, compileTime,
+                            System.nanoTime() - start - compileTime, -1, -1);
+
+                    if (failure != null) {
+                        policyChain.failWith(failure);
+                    } else {
+                        policyChain.doNext(request, response);
+                    }
+                });
+
+        try {
+            bind(scriptContext, request, null, response, null, executionContext);
+            scriptContext.setVariable(DONE_VARIABLE_NAME, execution.getDone());
+            scriptContext.setVariable(SET_TIMEOUT_VARIABLE_NAME, execution.getSetTimeout());
+            scriptContext.setVariable(CLEAR_TIMEOUT_VARIABLE_NAME, execution.getClearTimeout());
+
+            Object content = execution.execute(() -> scriptContext.execute(cachedScript.getScript()));
+            if (content instanceof CompletionStage) {
+                execution.completeWith((CompletionStage<?>) content);
+            }
+        } catch (Throwable t) {
+            execution.complete(t);
+        }
+    }
+
+    private static void checkResult(PolicyResult policyResult) throws PolicyFailureException {
+        if (policyResult.getState() == PolicyResult.State.FAILURE) {
+            throw new PolicyFailureException(toFailure(policyResult));
+        }
+    }
+
+    private static io.gravitee.policy.api.PolicyResult toFailure(PolicyResult policyResult) {
+        if (policyResult.getContentType() != null) {
+            return io.gravitee.policy.api.PolicyResult.failure(
+                    policyResult.getCode(), policyResult.getError(), policyResult.getContentType());
+        }
+
+        return io.gravitee.policy.api.PolicyResult.failure(policyResult.getCode(), policyResult.getError());
+    }
+
+    private static io.gravitee.policy.api.PolicyResult toFailure(ScriptTimeoutException ex) {
+        return io.gravitee.policy.api.PolicyResult.failure(HttpStatusCode.GATEWAY_TIMEOUT_504,
+                "Unable to run javascript: " + ex.getMessage());
+    }
+
+    /**
+     * Returns the error raised by the buffered content streams for a script which failed unexpectedly.
+     */
+    private static TransformationException toTransformationException(Throwable t) {
+        return new TransformationException("Unable to run javascript: " + t.getMessage(), t);
+    }
+
+    /**
+     * Returns <code>true</code> if the given error rejected the script before it could run, as no script context (see
+     * {@link ScriptContextPool#acquire()}) or evaluation thread (see {@link ScriptWatchdog}) is available.
+     */
+    private static boolean isRejection(Throwable t) {
+        return t instanceof TimeoutException || t instanceof RejectedExecutionException;
+    }
+
+    /**
+     * Returns the failure of a script which could not be run, see {@link #isRejection(Throwable)}.
+     */
+    private static io.gravitee.policy.api.PolicyResult unavailable(Throwable t) {
+        return io.gravitee.policy.api.PolicyResult.failure(HttpStatusCode.SERVICE_UNAVAILABLE_503,
+                "Unable to run javascript: " + t.getMessage());
+    }
+
+    /**
+     * Converts the result of a content script to the body to send. The original buffer is forwarded as is when the
+     * script returns nothing or returns the body it has been given. In the {@link ContentMode#JSON} and
+     * {@link ContentMode#RECORDS} modes, objects and arrays are serialized as JSON.
+     */
+    private Buffer toContent(Object content, Buffer buffer, boolean unmodified) throws IOException {
+        if (unmodified || ScriptValues.isNullOrUndefined(content)) {
+            return buffer;
+        }
+
+        ContentMode contentMode = javaScriptPolicyConfiguration.getContentMode();
+        if ((contentMode == ContentMode.JSON || contentMode == ContentMode.RECORDS) && JsonViews.isJson(content)) {
+            return JsonViews.write(content);
+        }
+
+        return toBuffer(content);
+    }
+
+    private static Buffer toBuffer(Object content) {
+        if (content instanceof Buffer) {
+            return (Buffer) content;
+        } else if (content instanceof byte[]) {
+            return Buffer.buffer((byte[]) content);
+        }
+
+        return Buffer.buffer(content.toString());
+    }
+
+    private static void removeContentLength(HttpHeaders headers) {
+        // The length of the transformed content is not known before the whole body has been streamed
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        headers.set(HttpHeaders.TRANSFER_ENCODING, HttpHeadersValues.TRANSFER_ENCODING_CHUNKED);
+    }
+
+    /**
+     * Base of the content streams running the script as the body arrives, rather than once the whole body has been
+     * buffered. Each subclass decides how long it holds its script context, which is given back once the body has
+     * been streamed or the stream failed.
+     */
+    private abstract class ScriptContentStream extends BufferedReadWriteStream {
+
+        final Phase phase;
+        final Request request;
+        final Response response;
+        final ExecutionContext executionContext;
+        final PolicyChain policyChain;
+        final String script;
+
+        ScriptRuntime runtime;
+        PooledScriptContext scriptContext;
+        boolean failed;
+        private ScriptContextPool pool;
+        private Script compiledScript;
+        private String digest;
+        private boolean aborted;
+
+        // Set when the body is decoded before the script, and its output encoded again
+        private final ContentDecoder decoder;
+        private final ContentEncoder encoder;
+
+        // Set when the body is captured, its first bytes being logged once it has been read or the stream failed
+        private final BodyCapture.Capture capture;
+
+        // Metrics, accumulated over the chunks and recorded when the body has been streamed
+        private long compileTime;
+        private long executionTime;
+        private long bytesIn;
+        private long bytesOut;
+
+        ScriptContentStream(Phase phase, Request request, Response response, ExecutionContext executionContext,
+                            PolicyChain policyChain, String script) {
+            this.phase = phase;
+            this.request = request;
+            this.response = response;
+            this.executionContext = executionContext;
+            this.policyChain = policyChain;
+            this.script = script;
+
+            final ContentCoding coding = contentCoding(phase, request, response);
+            this.decoder = coding != null ? coding.newDecoder() : null;
+            this.encoder = coding != null ? coding.newEncoder(Deflater.DEFAULT_COMPRESSION) : null;
+            this.capture = startCapture(phase, executionContext);
+        }
+
+        /**
+         * Called with each chunk of the body.
+         */
+        abstract void chunk(Buffer chunk) throws Exception;
+
+        /**
+         * Called once the whole body has been read.
+         */
+        abstract void finish() throws Exception;
+
+        // Synchronized, as the record stream may also be flushed by a timer
+        @Override
+        public synchronized SimpleReadWriteStream<Buffer> write(Buffer chunk) {
+            if (!failed) {
+                bytesIn += chunk.length();
+                try {
+                    Buffer content = decoder != null ? decoder.decode(chunk) : chunk;
+                    if (capture != null) {
+                        capture.write(content);
+                    }
+                    if (decoder == null || content.length() > 0) {
+                        chunk(content);
+                    }
+                } catch (Throwable t) {
+                    fail(t);
+                }
+            }
+
+            return this;
+        }
+
+        @Override
+        public synchronized void end() {
+            if (capture != null) {
+                capture.end();
+            }
+            if (!failed) {
+                try {
+                    if (decoder != null) {
+                        decoder.finish();
+                    }
+                    finish();
+                    if (encoder != null) {
+                        send(encoder.finish());
+                    }
+                    record(ScriptMetrics.Outcome.SUCCESS);
+                } catch (Throwable t) {
+                    fail(t);
+                }
+            }
+
+            release();
+            endCodecs();
+            super.end();
+        }
+
+        /**
+         * Returns the compiled script, resolved on first use.
+         */
+        Script compiledScript() throws Exception {
+            if (compiledScript == null) {
+                runtime = runtime();
+
+                long start = System.nanoTime();
+                CachedScript cachedScript = runtime.getScriptCache().get(script);
+                compiledScript = cachedScript.getScript();
+                digest = cachedScript.getDigest();
+                compileTime = System.nanoTime() - start;
+            }
+            return compiledScript;
+        }
+
+        /**
+         * Leases a script context from the given pool, unless one is already leased, and binds it to the request.
+         * Returns <code>true</code> if the context has just been leased.
+         */
+        boolean acquire(ScriptContextPool pool) throws Exception {
+            if (scriptContext != null) {
+                return false;
+            }
+
+            scriptContext = pool.acquire();
+            this.pool = pool;
+            bind(scriptContext, request, null, response, null, executionContext);
+            return true;
+        }
+
+        /**
+         * Runs a part of the script under the time budget, then checks the result it may have set.
+         */
+        Object run(Callable<Object> task) throws Exception {
+            long start = System.nanoTime();
+            Object content;
+            try {
+                content = WATCHDOG.run(digest, javaScriptPolicyConfiguration.getMaxExecutionTime(), task,
+                        scriptContext::cancel, scriptContext.isCancellable());
+            } catch (ScriptTimeoutException ex) {
+                aborted = true;
+                throw ex;
+            } finally {
+                executionTime += System.nanoTime() - start;
+            }
+            checkResult(scriptContext.getResult());
+            return content;
+        }
+
+        /**
+         * Writes the given content downstream, encoded again when the body has been decoded. Each content is flushed
+         * by the encoder, so that it can be decoded as soon as received.
+         */
+        void emit(Buffer buffer) {
+            if (encoder == null) {
+                send(buffer);
+            } else if (buffer.length() > 0) {
+                send(encoder.encode(buffer, true));
+            }
+        }
+
+        private void send(Buffer buffer) {
+            bytesOut += buffer.length();
+            super.write(buffer);
+        }
+
+        void fail(Throwable t) {
+            failed = true;
+            if (capture != null) {
+                capture.end();
+            }
+            release();
+            endCodecs();
+            if (t instanceof PolicyFailureException) {
+                record(ScriptMetrics.Outcome.FAILURE);
+                policyChain.streamFailWith(((PolicyFailureException) t).getResult());
+            } else if (t instanceof ScriptTimeoutException) {
+                record(ScriptMetrics.Outcome.TIMEOUT);
+                policyChain.streamFailWith(toFailure((ScriptTimeoutException) t));
+            } else if (isRejection(t)) {
+                record(ScriptMetrics.Outcome.REJECTED);
+                policyChain.streamFailWith(unavailable(t));
+            } else {
+                record(ScriptMetrics.Outcome.ERROR);
+                policyChain.streamFailWith(io.gravitee.policy.api.PolicyResult.failure(
+                        "Unable to run javascript: " + t.getMessage()));
+            }
+        }
+
+        private void record(ScriptMetrics.Outcome outcome) {
+            if (runtime != null) {
+                recordMetrics(executionContext, phase, runtime.getScriptCache().digest(script), outcome, compileTime,
+                        executionTime, bytesIn, bytesOut);
+            }
+        }
+
+        /**
+         * Gives the script context back, if one is leased.
+         */
+        void release() {
+            if (scriptContext != null) {
+                JavaScriptPolicy.this.release(pool, scriptContext, aborted);
+                scriptContext = null;
+            }
+        }
+
+        /**
+         * Releases the native memory of the decoder and encoder, once the body has been streamed or aborted.
+         */
+        void endCodecs() {
+            if (decoder != null) {
+                decoder.end();
+            }
+            if (encoder != null) {
+                encoder.end();
+            }
+        }
+    }
+
+    /**
+     * Content stream used by the {@link ContentMode#STREAMING} mode: the script is evaluated once, to register its
+     * {@link ContentStream} callbacks which are then applied to each chunk as it arrives.
+     *
+     * As the callbacks belong to the global scope of the script, the script context is held from the first chunk (or
+     * the end of the body) to the end of the body. It is leased from the pool of held contexts, and given back once
+     * no chunk has been received for {@link #STREAM_IDLE_TIMEOUT} milliseconds, so that a body which is never
+     * completed (ie. aborted by the client) does not keep it forever.
+     */
+    private class StreamingScriptStream extends ScriptContentStream {
+
+        private final ContentStream contentStream = new ContentStream();
+
+        private ScheduledFuture<?> idleTimer;
+        private long lastActivity;
+        private boolean expired;
+
+        StreamingScriptStream(Phase phase, Request request, Response response, ExecutionContext executionContext,
+                              PolicyChain policyChain, String script) {
+            super(phase, request, response, executionContext, policyChain, script);
+        }
+
+        // The chain is failed by the next chunk, or the end, of a body expired by the idle timer
+        @Override
+        public synchronized SimpleReadWriteStream<Buffer> write(Buffer chunk) {
+            checkExpired();
+            return super.write(chunk);
+        }
+
+        @Override
+        public synchronized void end() {
+            checkExpired();
+            super.end();
+        }
+
+        @Override
+        void chunk(Buffer chunk) throws Exception {
+            start();
+            flush(run(() -> contentStream.chunk(chunk)));
+        }
+
+        @Override
+        void finish() throws Exception {
+            start();
+            flush(run(contentStream::end));
+        }
+
+        /**
+         * Evaluates the script, once the script context has been leased.
+         */
+        private void start() throws Exception {
+            lastActivity = System.nanoTime();
+            Script compiledScript = compiledScript();
+            if (acquire(runtime.getHeldContextPool())) {
+                scriptContext.setVariable(STREAM_VARIABLE_NAME, contentStream);
+                if (STREAM_IDLE_TIMEOUT > 0) {
+                    idleTimer = SCHEDULER.schedule(this::checkIdle, STREAM_IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+                }
+                run(() -> scriptContext.execute(compiledScript));
+            }
+        }
+
+        private synchronized void checkIdle() {
+            if (scriptContext == null) {
+                return;
+            }
+
+            long idle = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastActivity);
+            if (idle < STREAM_IDLE_TIMEOUT) {
+                idleTimer = SCHEDULER.schedule(this::checkIdle, STREAM_IDLE_TIMEOUT - idle, TimeUnit.MILLISECONDS);
+            } else {
+                // The chain is failed by the next chunk, if any, as the stream must not be used by this thread
+                expired = true;
+                release();
+                endCodecs();
+            }
+        }
+
+        private void checkExpired() {
+            if (expired && !failed) {
+                fail(new IllegalStateException("No chunk of the body received for " + STREAM_IDLE_TIMEOUT + " ms"));
+            }
+        }
+
+        @Override
+        void release() {
+            if (idleTimer != null) {
+                idleTimer.cancel(false);
+                idleTimer = null;
+            }
+            super.release();
+        }
+
+        private void flush(Object content) {
+            if (!ScriptValues.isNullOrUndefined(content)) {
+                emit(toBuffer(content));
+            }
+        }
+    }
+
+    /**
+     * Content stream used by the {@link ContentMode#RECORDS} mode: the body is split into records as it arrives, and
+     * the script is evaluated for each of them, the record being its content, or for each batch of records, given as
+     * the <code>records</code> variable. The outputs of the records completed by a chunk are written downstream at
+     * once, in the format of the body.
+     *
+     * A partial batch is evaluated at the end of the chunk, or once the flush latency has elapsed without the batch
+     * being completed by the next chunks, in which case it is evaluated (and written) on the context of the request.
+     *
+     * As the script is evaluated anew for each record or batch, a script context is only leased while a chunk is
+     * processed, and given back before waiting for the next one.
+     */
+    private class RecordScriptStream extends ScriptContentStream {
+
+        private final RecordFormat format = javaScriptPolicyConfiguration.getRecordFormat();
+        private final int batchSize = Math.max(1, javaScriptPolicyConfiguration.getRecordBatchSize());
+        private final long flushLatency = javaScriptPolicyConfiguration.getRecordFlushLatency();
+        private final RecordSplitter splitter = RecordSplitter.of(format);
+        private final RecordSplitter.RecordHandler handler = this::add;
+
+        private List<BodyRecord> batch = new ArrayList<>();
+        private ScheduledFuture<?> flushTimer;
+        private Executor flushExecutor;
+        private Buffer output;
+        private boolean first = true;
+
+        RecordScriptStream(Phase phase, Request request, Response response, ExecutionContext executionContext,
+                           PolicyChain policyChain, String script) {
+            super(phase, request, response, executionContext, policyChain, script);
+        }
+
+        @Override
+        void chunk(Buffer chunk) throws Exception {
             try {
-                // Prepare binding
-                PolicyResult policyResult = new PolicyResult();
-                executeScript(request, response, executionContext, script, policyResult);
-
-                if (policyResult.getState() == PolicyResult.State.SUCCESS) {
-                    policyChain.doNext(request, response);
-                } else {
-                    if (policyResult.getContentType() != null) {
-                        policyChain.failWith(io.gravitee.policy.api.PolicyResult.failure(
-                                policyResult.getCode(),
-                                policyResult.getError(),
-                                policyResult.getContentType()));
+                splitter.write(chunk, handler);
+                if (!batch.isEmpty()) {
+                    if (flushLatency > 0) {
+                        scheduleFlush();
                     } else {
-                        policyChain.failWith(io.gravitee.policy.api.PolicyResult.failure(
-                                policyResult.getCode(),
-                                policyResult.getError()));
+                        transformBatch();
                     }
                 }
-            } catch (Throwable t) {
-                policyChain.failWith(io.gravitee.policy.api.PolicyResult.failure(t.getMessage()));
+                flush();
+            } finally {
+                release();
             }
         }
 
-        return null;
+        @Override
+        void finish() throws Exception {
+            try {
+                splitter.end(handler);
+                transformBatch();
+                if (format == RecordFormat.JSON_ARRAY) {
+                    append(first ? "[]" : "]");
+                }
+                flush();
+            } finally {
+                release();
+            }
+        }
+
+        /**
+         * Returns the compiled script, once a script context has been leased for the current chunk.
+         */
+        private Script lease() throws Exception {
+            Script compiledScript = compiledScript();
+            acquire(runtime.getContextPool());
+            return compiledScript;
+        }
+
+        private void add(Buffer record) throws Exception {
+            if (batchSize == 1) {
+                transform(record);
+            } else {
+                batch.add(new BodyRecord(record));
+                if (batch.size() >= batchSize) {
+                    transformBatch();
+                }
+            }
+        }
+
+        private void transform(Buffer record) throws Exception {
+            final Script compiledScript = lease();
+            Object content;
+            boolean unmodified;
+            if (phase == Phase.REQUEST_CONTENT) {
+                scriptContext.getRequest().reset(request, record);
+                content = run(() -> scriptContext.execute(compiledScript));
+                unmodified = scriptContext.getRequest().isContent(content);
+            } else {
+                scriptContext.getResponse().reset(response, record);
+                content = run(() -> scriptContext.execute(compiledScript));
+                unmodified = scriptContext.getResponse().isContent(content);
+            }
+
+            writeRecord(toContent(content, record, unmodified));
+        }
+
+        /**
+         * Evaluates the script once for the pending records, which either returns an array holding the output of each
+         * record, or sets the output of the records.
+         */
+        private void transformBatch() throws Exception {
+            if (flushTimer != null) {
+                flushTimer.cancel(false);
+                flushTimer = null;
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            final Script compiledScript = lease();
+            List<BodyRecord> records = batch;
+            batch = new ArrayList<>(batchSize);
+            scriptContext.setVariable(RECORDS_VARIABLE_NAME, Collections.unmodifiableList(records));
+            Object content = run(() -> scriptContext.execute(compiledScript));
+
+            List<Object> outputs = ScriptValues.toList(content);
+            if (outputs == null) {
+                if (!ScriptValues.isNullOrUndefined(content)) {
+                    throw new IllegalStateException("The script must return an array holding the output of each record");
+                }
+                outputs = Collections.emptyList();
+            }
+
+            for (int i = 0; i < Math.max(records.size(), outputs.size()); i++) {
+                if (i < records.size()) {
+                    BodyRecord record = records.get(i);
+                    Object value = i < outputs.size() ? outputs.get(i) : record.getOutput();
+                    writeRecord(toContent(value, record.getBuffer(), record.isContent(value)));
+                } else if (!ScriptValues.isNullOrUndefined(outputs.get(i))) {
+                    // Outputs beyond the records are written as is
+                    writeRecord(toContent(outputs.get(i), null, false));
+                }
+            }
+        }
+
+        /**
+         * Flushes the pending batch after the flush latency, on the context of the thread writing the body as the
+         * outputs are written downstream.
+         */
+        private void scheduleFlush() {
+            if (flushTimer == null) {
+                if (flushExecutor == null) {
+                    flushExecutor = CallerContext.capture(CALLBACK_EXECUTOR);
+                }
+                flushTimer = SCHEDULER.schedule(() -> flushExecutor.execute(this::flushBatch), flushLatency,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private synchronized void flushBatch() {
+            if (flushTimer != null && !failed) {
+                try {
+                    transformBatch();
+                    flush();
+                } catch (Throwable t) {
+                    fail(t);
+                } finally {
+                    release();
+                }
+            }
+        }
+
+        /**
+         * Appends the output of a record, unless it is empty, in which case the record is dropped.
+         */
+        private void writeRecord(Buffer buffer) {
+            if (buffer.length() == 0) {
+                return;
+            }
+
+            if (format == RecordFormat.JSON_ARRAY) {
+                append(first ? "[" : ",");
+                append(buffer);
+            } else {
+                append(buffer);
+                append("\n");
+            }
+            first = false;
+        }
+
+        private void append(Buffer buffer) {
+            output = (output == null) ? Buffer.buffer().appendBuffer(buffer) : output.appendBuffer(buffer);
+        }
+
+        private void append(String separator) {
+            output = (output == null) ? Buffer.buffer(separator) : output.appendString(separator);
+        }
+
+        private void flush() {
+            if (output != null) {
+                emit(output);
+                output = null;
+            }
+        }
     }
 
-    private String executeStreamScript(Request request, Response response, ExecutionContext executionContext,
-                                       String script) throws PolicyFailureException, ScriptException {
-        // Prepare binding
-        PolicyResult policyResult = new PolicyResult();
-        String content = executeScript(request, response, executionContext, script, policyResult);
+    /**
+     * Content stream failing the chain with the given result, without writing the body downstream.
+     */
+    private static final class FailedContentStream extends BufferedReadWriteStream {
 
-        if (policyResult.getState() == PolicyResult.State.FAILURE) {
-            throw new PolicyFailureException(policyResult);
+        private final PolicyChain policyChain;
+        private final io.gravitee.policy.api.PolicyResult failure;
+        private boolean failed;
+
+        FailedContentStream(PolicyChain policyChain, io.gravitee.policy.api.PolicyResult failure) {
+            this.policyChain = policyChain;
+            this.failure = failure;
         }
 
-        return content;
+        @Override
+        public SimpleReadWriteStream<Buffer> write(Buffer chunk) {
+            fail();
+            return this;
+        }
+
+        @Override
+        public void end() {
+            fail();
+            super.end();
+        }
+
+        private void fail() {
+            if (!failed) {
+                failed = true;
+                policyChain.streamFailWith(failure);
+            }
+        }
     }
 
     private static class PolicyFailureException extends Exception {
-        private final PolicyResult result;
-        PolicyFailureException(PolicyResult result) {
+        private final io.gravitee.policy.api.PolicyResult result;
+        PolicyFailureException(io.gravitee.policy.api.PolicyResult result) {
             this.result = result;
         }
-        public PolicyResult getResult() {
+        public io.gravitee.policy.api.PolicyResult getResult() {
             return result;
         }
     }
+
+    /**
+     * A policy chain resumed through the given executor, ie. on the Vert.x context of the request, see
+     * {@link CallerContext}.
+     */
+    private static final class CallerPolicyChain implements PolicyChain {
+
+        private final PolicyChain policyChain;
+        private final Executor executor;
+
+        CallerPolicyChain(PolicyChain policyChain, Executor executor) {
+            this.policyChain = policyChain;
+            this.executor = executor;
+        }
+
+        @Override
+        public void doNext(Request request, Response response) {
+            executor.execute(() -> policyChain.doNext(request, response));
+        }
+
+        @Override
+        public void failWith(io.gravitee.policy.api.PolicyResult policyResult) {
+            executor.execute(() -> policyChain.failWith(policyResult));
+        }
+
+        @Override
+        public void streamFailWith(io.gravitee.policy.api.PolicyResult policyResult) {
+            executor.execute(() -> policyChain.streamFailWith(policyResult));
+        }
+    }
 }
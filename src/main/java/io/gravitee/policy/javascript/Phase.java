@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript;
+
+import io.gravitee.gateway.api.ExecutionContext;
+
+/**
+ * The request processing phases a script can be attached to.
+ *
+ * @author gr1d.io team
+ */
+public enum Phase {
+
+    REQUEST("request"),
+    RESPONSE("response"),
+    REQUEST_CONTENT("requestContent"),
+    RESPONSE_CONTENT("responseContent");
+
+    private final String label;
+    private final String attributePrefix;
+
+    Phase(String label) {
+        this.label = label;
+        this.attributePrefix = ExecutionContext.ATTR_PREFIX + "javascript." + label + '.';
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Returns the name of the execution context attribute holding the given information about this phase script,
+     * ie. <code>gravitee.attribute.javascript.request.execution-time</code>.
+     */
+    public String attribute(String name) {
+        return attributePrefix + name;
+    }
+}
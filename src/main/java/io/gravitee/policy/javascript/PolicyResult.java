@@ -57,6 +57,16 @@ public class PolicyResult {
         this.contentType = contentType;
     }
 
+    /**
+     * Restores the default result, so that the same instance can be reused across script invocations.
+     */
+    public void reset() {
+        this.state = State.SUCCESS;
+        this.error = null;
+        this.code = HttpStatusCode.INTERNAL_SERVER_ERROR_500;
+        this.contentType = null;
+    }
+
     public State getState() {
         return state;
     }
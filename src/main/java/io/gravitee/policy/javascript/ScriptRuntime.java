@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript;
+
+import io.gravitee.policy.javascript.cache.CompiledScriptCache;
+import io.gravitee.policy.javascript.cache.ScriptStore;
+import io.gravitee.policy.javascript.configuration.ScriptEngineType;
+import io.gravitee.policy.javascript.context.PooledScriptContext;
+import io.gravitee.policy.javascript.context.ScriptContextPool;
+import io.gravitee.policy.javascript.engine.JavaScriptEngine;
+import io.gravitee.policy.javascript.engine.graaljs.GraalJsEngine;
+import io.gravitee.policy.javascript.engine.nashorn.NashornEngine;
+import io.gravitee.policy.javascript.utils.JmxUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * The resources shared by the policies running their scripts with the same engine: the engine itself, its compiled
+ * scripts and its pools of script contexts. Contexts held across I/O, ie. while a body is streamed or an asynchronous
+ * script is pending, come from a pool of their own, so that they never leave the scripts run at once without a context.
+ *
+ * When a store directory is given, the sources of the compiled scripts are kept in a {@link ScriptStore}, and those
+ * stored by a previous run are compiled as soon as the runtime is created.
+ *
+ * @author gr1d.io team
+ */
+final class ScriptRuntime {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScriptRuntime.class);
+
+    private final JavaScriptEngine engine;
+    private final CompiledScriptCache scriptCache;
+    private final ScriptContextPool contextPool;
+    private final ScriptContextPool heldContextPool;
+
+    ScriptRuntime(ScriptEngineType engineType, Consumer<PooledScriptContext> initializer, int cacheMaxSize,
+                  int poolMaxSize, long poolAcquireTimeout, Path storeDirectory) {
+        this.engine = createEngine(engineType);
+
+        final ScriptStore store = storeDirectory != null ? openStore(storeDirectory, cacheMaxSize) : null;
+        this.scriptCache = new CompiledScriptCache(engine, cacheMaxSize, store);
+        this.contextPool = new ScriptContextPool(engine, initializer, poolMaxSize, poolAcquireTimeout);
+        this.heldContextPool = ScriptContextPool.overflowing(engine, initializer, poolMaxSize);
+
+        JmxUtils.register(contextPool, "type=ScriptContextPool,engine=" + engine.getName());
+        JmxUtils.register(heldContextPool, "type=ScriptContextPool,engine=" + engine.getName() + ",pool=held");
+
+        if (store != null) {
+            long start = System.nanoTime();
+            int count = scriptCache.preload();
+            LOGGER.info("{} stored scripts compiled with {} {} in {} ms", count, engine.getName(),
+                    engine.getVersion(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private ScriptStore openStore(Path storeDirectory, int maxSize) {
+        try {
+            return ScriptStore.open(storeDirectory, engine.getName(), engine.getVersion(), maxSize);
+        } catch (IOException ioe) {
+            LOGGER.warn("Unable to open the script store in {}, scripts are compiled on demand",
+                    storeDirectory, ioe);
+            return null;
+        }
+    }
+
+    private static JavaScriptEngine createEngine(ScriptEngineType engineType) {
+        switch (engineType) {
+            case GRAALJS:
+                return new GraalJsEngine();
+            case NASHORN:
+            default:
+                return new NashornEngine();
+        }
+    }
+
+    JavaScriptEngine getEngine() {
+        return engine;
+    }
+
+    CompiledScriptCache getScriptCache() {
+        return scriptCache;
+    }
+
+    ScriptContextPool getContextPool() {
+        return contextPool;
+    }
+
+    ScriptContextPool getHeldContextPool() {
+        return heldContextPool;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.cache;
+
+import io.gravitee.policy.javascript.engine.Script;
+
+/**
+ * A compiled script, along with the digest of its source.
+ *
+ * @author gr1d.io team
+ */
+public final class CachedScript {
+
+    private final String digest;
+    private final Script script;
+
+    // Approximate time of the last use, written without synchronization by the threads running the script
+    private long lastUse = System.nanoTime();
+
+    CachedScript(String digest, Script script) {
+        this.digest = digest;
+        this.script = script;
+    }
+
+    void touch() {
+        lastUse = System.nanoTime();
+    }
+
+    long lastUse() {
+        return lastUse;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public Script getScript() {
+        return script;
+    }
+}
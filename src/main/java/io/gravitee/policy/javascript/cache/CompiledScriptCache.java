@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.cache;
+
+import io.gravitee.policy.javascript.engine.JavaScriptEngine;
+import io.gravitee.policy.javascript.utils.Digests;
+
+import javax.script.ScriptException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bounded cache of compiled scripts, keyed by their source and identified by its SHA-1 digest.
+ *
+ * The compiled scripts are looked up without locking, as they are on the path of every script execution: the sources
+ * of the policies are the strings of their configuration, whose hash code is computed once. The least recently used
+ * script is evicted once {@code maxSize} scripts are compiled, so that a gateway running many APIs with distinct
+ * scripts does not grow the cache without bound.
+ *
+ * When a {@link ScriptStore} is given, the sources of the compiled scripts are also stored on disk, and the scripts
+ * stored by a previous run are compiled again by {@link #preload()}.
+ *
+ * @author gr1d.io team
+ */
+public final class CompiledScriptCache {
+
+    private final JavaScriptEngine engine;
+    private final ScriptStore store;
+    private final int maxSize;
+    private final ConcurrentMap<String, CachedScript> scripts = new ConcurrentHashMap<>();
+
+    // Digests of the most recently used sources not compiled, ie. invalid ones, so that they are not hashed each time
+    private final Map<String, String> digests;
+
+    public CompiledScriptCache(JavaScriptEngine engine, int maxSize) {
+        this(engine, maxSize, null);
+    }
+
+    public CompiledScriptCache(JavaScriptEngine engine, int maxSize, ScriptStore store) {
+        this.engine = engine;
+        this.store = store;
+        this.maxSize = maxSize;
+        this.digests = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the compiled form of the given source, compiling and caching it on first use.
+     */
+    public CachedScript get(String source) throws ScriptException {
+        CachedScript compiled = scripts.get(source);
+        if (compiled != null) {
+            compiled.touch();
+            return compiled;
+        }
+
+        // Compile outside of any lock: a concurrent miss may compile twice, but never blocks other scripts
+        final String digest = digest(source);
+        compiled = add(source, new CachedScript(digest, engine.compile(source)));
+        if (store != null) {
+            store.store(digest, source);
+        }
+        return compiled;
+    }
+
+    /**
+     * Caches the given compiled script, unless one is already cached for its source, evicting the least recently
+     * used script when the cache is full. Returns the cached script.
+     */
+    private CachedScript add(String source, CachedScript compiled) {
+        CachedScript previous = scripts.putIfAbsent(source, compiled);
+        if (previous != null) {
+            return previous;
+        }
+
+        synchronized (scripts) {
+            while (scripts.size() > maxSize) {
+                Map.Entry<String, CachedScript> eldest = null;
+                for (Map.Entry<String, CachedScript> entry : scripts.entrySet()) {
+                    if (entry.getValue() != compiled
+                            && (eldest == null || entry.getValue().lastUse() - eldest.getValue().lastUse() < 0)) {
+                        eldest = entry;
+                    }
+                }
+                if (eldest == null) {
+                    break;
+                }
+                scripts.remove(eldest.getKey(), eldest.getValue());
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Compiles the scripts of the store, if any, and returns the number of scripts compiled.
+     */
+    public int preload() {
+        if (store == null) {
+            return 0;
+        }
+
+        int count = 0;
+        for (Map.Entry<String, String> source : store.load().entrySet()) {
+            try {
+                add(source.getValue(), new CachedScript(source.getKey(), engine.compile(source.getValue())));
+                count++;
+            } catch (ScriptException ex) {
+                // Only valid scripts are stored: the engine no longer accepts it, it is compiled again on demand
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the SHA-1 digest of the given source.
+     */
+    public String digest(String source) {
+        CachedScript compiled = scripts.get(source);
+        if (compiled != null) {
+            return compiled.getDigest();
+        }
+
+        String digest;
+        synchronized (digests) {
+            digest = digests.get(source);
+        }
+
+        if (digest == null) {
+            digest = Digests.sha1(source);
+            synchronized (digests) {
+                digests.put(source, digest);
+            }
+        }
+
+        return digest;
+    }
+
+    public int size() {
+        return scripts.size();
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.cache;
+
+import io.gravitee.policy.api.PolicyResult;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the outputs of the content scripts, keyed by a digest of their inputs, so that a script which is a
+ * pure function of its inputs is not run again on identical requests.
+ *
+ * The cache is bounded by the total size of the stored contents, the least recently used outputs being evicted first,
+ * and each output expires after its time to live.
+ *
+ * @author gr1d.io team
+ */
+public final class OutputCache implements OutputCacheMXBean {
+
+    // Rough footprint of an entry besides its content: its key, its entry and the map node
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final long maxBytes;
+    private final Map<String, Output> outputs = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public OutputCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the output stored for the given key, or <code>null</code>. A hit accounts {@code inputLength} bytes as
+     * not transformed again.
+     */
+    public Output get(String key, long inputLength) {
+        synchronized (outputs) {
+            Output output = outputs.get(key);
+            if (output != null && output.expiresAt - System.nanoTime() <= 0) {
+                remove(key);
+                output = null;
+            }
+
+            if (output == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            bytesSaved.add(Math.max(inputLength, 0));
+            return output;
+        }
+    }
+
+    /**
+     * Stores the given output, expiring after the given time to live in milliseconds. Outputs larger than the whole
+     * cache are not stored.
+     */
+    public void put(String key, Output output, long ttl) {
+        output.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl);
+        if (output.weight() > maxBytes) {
+            return;
+        }
+
+        synchronized (outputs) {
+            remove(key);
+            outputs.put(key, output);
+            bytes += output.weight();
+
+            Iterator<Output> eldest = outputs.values().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                bytes -= eldest.next().weight();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    // Must be called while holding the lock
+    private void remove(String key) {
+        Output removed = outputs.remove(key);
+        if (removed != null) {
+            bytes -= removed.weight();
+        }
+    }
+
+    @Override
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public long getBytes() {
+        synchronized (outputs) {
+            return bytes;
+        }
+    }
+
+    @Override
+    public int getSize() {
+        synchronized (outputs) {
+            return outputs.size();
+        }
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        final long hits = getHits();
+        final long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * The output of a content script: either the content it produced (<code>null</code> to let the original content
+     * through), or the result it failed the request with.
+     */
+    public static final class Output {
+
+        private final byte[] content;
+        private final PolicyResult failure;
+        private long expiresAt;
+
+        private Output(byte[] content, PolicyResult failure) {
+            this.content = content;
+            this.failure = failure;
+        }
+
+        public static Output content(byte[] content) {
+            return new Output(content, null);
+        }
+
+        public static Output failure(PolicyResult failure) {
+            return new Output(null, failure);
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        public PolicyResult getFailure() {
+            return failure;
+        }
+
+        private long weight() {
+            return ENTRY_OVERHEAD + (content == null ? 0 : content.length);
+        }
+    }
+}
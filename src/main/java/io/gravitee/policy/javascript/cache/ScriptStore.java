@@ -0,0 +1,315 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.cache;
+
+import io.gravitee.policy.javascript.utils.Digests;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk store of the sources of the scripts compiled by an engine, so that they are compiled again as soon as the
+ * gateway restarts instead of on their first request. Only the sources are stored: the engines do not offer a portable
+ * form of their compiled scripts.
+ *
+ * Scripts are stored in a directory per engine version (<code>&lt;root&gt;/&lt;engine&gt;-&lt;version&gt;</code>), one
+ * file per script named after the SHA-1 digest of its source. Each file starts with a header holding the length and
+ * the CRC-32 of the source: files with an invalid header, checksum or digest are deleted when loaded, as well as the
+ * directories of the other versions of the engine.
+ *
+ * Scripts are written, and the oldest ones deleted beyond the maximum size of the store, by a background thread so
+ * that the file system is never accessed by the threads handling the requests. Writes are dropped when too many of
+ * them are pending: the scripts concerned are then compiled on demand after a restart.
+ *
+ * @author gr1d.io team
+ */
+public final class ScriptStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScriptStore.class);
+
+    private static final int MAGIC = 0x47524a53;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+
+    private static final String SCRIPT_EXTENSION = ".js";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final String SCRIPTS_DIRECTORY = "scripts";
+
+    private static final int WRITER_QUEUE_SIZE = 1000;
+    private static final Executor WRITER = newWriter();
+
+    private final Path directory;
+    private final Path scripts;
+    private final int maxSize;
+    private final Executor writer;
+
+    // Digests of the stored scripts, from the least recently stored one
+    private final Set<String> stored = new LinkedHashSet<>();
+
+    private ScriptStore(Path directory, int maxSize, Executor writer) {
+        this.directory = directory;
+        this.scripts = directory.resolve(SCRIPTS_DIRECTORY);
+        this.maxSize = maxSize;
+        this.writer = writer;
+    }
+
+    private static Executor newWriter() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(WRITER_QUEUE_SIZE), runnable -> {
+                    Thread thread = new Thread(runnable, "gravitee-javascript-store");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Opens the store of the given engine version under the given root directory, deleting the stores of its other
+     * versions. At most {@code maxSize} scripts are kept, the least recently stored ones being deleted first.
+     */
+    public static ScriptStore open(Path root, String engineName, String engineVersion, int maxSize) throws IOException {
+        return open(root, engineName, engineVersion, maxSize, WRITER);
+    }
+
+    /**
+     * Opens a store whose scripts are written by the given executor.
+     */
+    static ScriptStore open(Path root, String engineName, String engineVersion, int maxSize, Executor writer)
+            throws IOException {
+        final String prefix = engineName + '-';
+        final Path directory = root.resolve(prefix + engineVersion.replaceAll("[^A-Za-z0-9._-]", "_"));
+
+        Files.createDirectories(root);
+        try (DirectoryStream<Path> stores = Files.newDirectoryStream(root, prefix + '*')) {
+            for (Path store : stores) {
+                if (!store.equals(directory)) {
+                    LOGGER.info("Deleting the stale scripts of {}", store.getFileName());
+                    delete(store);
+                }
+            }
+        }
+
+        Files.createDirectories(directory.resolve(SCRIPTS_DIRECTORY));
+        return new ScriptStore(directory, maxSize, writer);
+    }
+
+    /**
+     * Loads the stored scripts, from the most recently stored one, as a map of their source keyed by digest.
+     * Corrupted scripts are deleted, and so are the oldest scripts beyond the maximum size of the store.
+     */
+    public Map<String, String> load() {
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(scripts)) {
+            for (Path entry : entries) {
+                if (entry.getFileName().toString().endsWith(TEMP_EXTENSION)) {
+                    // Left over by an interrupted write
+                    deleteQuietly(entry);
+                } else {
+                    files.add(entry);
+                }
+            }
+        } catch (IOException ioe) {
+            LOGGER.warn("Unable to list the stored scripts of {}", scripts, ioe);
+            return new LinkedHashMap<>();
+        }
+
+        files.sort(Comparator.comparing(ScriptStore::lastModified).reversed());
+
+        final Map<String, String> sources = new LinkedHashMap<>();
+        for (Path file : files) {
+            if (sources.size() >= maxSize) {
+                deleteQuietly(file);
+                continue;
+            }
+
+            final String fileName = file.getFileName().toString();
+            final String digest = fileName.endsWith(SCRIPT_EXTENSION) ?
+                    fileName.substring(0, fileName.length() - SCRIPT_EXTENSION.length()) : null;
+            final String source = digest != null ? read(file) : null;
+
+            if (source != null && digest.equals(Digests.sha1(source))) {
+                sources.put(digest, source);
+            } else {
+                LOGGER.warn("Deleting corrupted compiled script {}", file);
+                deleteQuietly(file);
+            }
+        }
+
+        final List<String> digests = new ArrayList<>(sources.keySet());
+        synchronized (stored) {
+            for (int i = digests.size() - 1; i >= 0; i--) {
+                stored.add(digests.get(i));
+            }
+        }
+
+        return sources;
+    }
+
+    /**
+     * Stores the given source in the background, unless already stored.
+     */
+    public void store(String digest, String source) {
+        synchronized (stored) {
+            if (stored.contains(digest)) {
+                return;
+            }
+        }
+
+        writer.execute(() -> write(digest, source));
+    }
+
+    /**
+     * Writes the script file, then deletes the least recently stored scripts beyond the maximum size of the store.
+     * The script file is written atomically, so that a concurrent or interrupted write never leaves a partial script
+     * behind.
+     */
+    private void write(String digest, String source) {
+        final Path file = scripts.resolve(digest + SCRIPT_EXTENSION);
+        if (Files.exists(file)) {
+            return;
+        }
+
+        final byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + bytes.length);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(bytes.length).putLong(crc.getValue()).put(bytes);
+        buffer.flip();
+
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(scripts, digest, TEMP_EXTENSION);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ioe) {
+            LOGGER.warn("Unable to store the compiled script {}", file, ioe);
+            if (temp != null) {
+                deleteQuietly(temp);
+            }
+            return;
+        }
+
+        final List<String> evicted = new ArrayList<>();
+        synchronized (stored) {
+            stored.add(digest);
+            for (Iterator<String> it = stored.iterator(); stored.size() > maxSize && it.hasNext(); ) {
+                evicted.add(it.next());
+                it.remove();
+            }
+        }
+        for (String eldest : evicted) {
+            deleteQuietly(scripts.resolve(eldest + SCRIPT_EXTENSION));
+        }
+    }
+
+    /**
+     * Reads the source of a script file, mapping it in memory, or returns <code>null</code> when it is not valid.
+     */
+    private static String read(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+
+            final int length = buffer.getInt();
+            final long checksum = buffer.getLong();
+            if (length != buffer.remaining()) {
+                return null;
+            }
+
+            final byte[] bytes = new byte[length];
+            buffer.get(bytes);
+
+            final CRC32 crc = new CRC32();
+            crc.update(bytes, 0, length);
+            return crc.getValue() == checksum ? new String(bytes, StandardCharsets.UTF_8) : null;
+        } catch (IOException ioe) {
+            return null;
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException ioe) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ioe) {
+            LOGGER.warn("Unable to delete {}", file, ioe);
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,332 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.cache;
+
+import io.gravitee.policy.javascript.utils.ScriptValues;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded cache shared by the scripts of an API across requests, exposed to them as <code>cache</code>, ie. to keep
+ * lookup tables or parsed keys:
+ *
+ * <pre>
+ * var keys = cache.computeIfAbsent('jwks', function (key) {
+ *     return JSON.parse(context.getAttribute('jwks'));
+ * }, 60000);
+ * </pre>
+ *
+ * Entries expire after their time to live (in milliseconds, <code>0</code> for no expiry), and the least recently
+ * used entry is evicted once {@code maxSize} entries are reached. Values are stored as deep, unmodifiable copies (see
+ * {@link ScriptValues#freeze(Object)}), as script objects can not be shared between script contexts.
+ *
+ * {@link #computeIfAbsent(String, Function, long)} is atomic: a value is computed once, concurrent callers for the
+ * same key waiting for it (up to {@code loadTimeout} milliseconds), while other keys remain available.
+ *
+ * @author gr1d.io team
+ */
+public final class SharedCache implements SharedCacheMXBean {
+
+    private final int maxSize;
+    private final long defaultTtl;
+    private final long loadTimeout;
+    private final Map<String, Entry> entries;
+
+    // Last time the cache was handed to a script, see touch()
+    private volatile long lastAccess = System.nanoTime();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * @param loadTimeout the time to wait for a value being computed by another caller, in milliseconds
+     *                    (<code>0</code> to wait for it whatever the time)
+     */
+    public SharedCache(int maxSize, long defaultTtl, long loadTimeout) {
+        this.maxSize = maxSize;
+        this.defaultTtl = defaultTtl;
+        this.loadTimeout = loadTimeout;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > SharedCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the value of the given key, or <code>null</code> if there is none (or it is being computed).
+     */
+    public Object get(String key) {
+        synchronized (entries) {
+            Entry entry = present(key, System.nanoTime());
+            if (entry == null || entry.loading != null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value;
+        }
+    }
+
+    /**
+     * Stores the given value, expiring after the default time to live. A <code>null</code> value removes the key.
+     */
+    public void put(String key, Object value) {
+        put(key, value, defaultTtl);
+    }
+
+    /**
+     * Stores the given value, expiring after the given time to live in milliseconds (<code>0</code> for no expiry).
+     * A <code>null</code> value removes the key.
+     */
+    public void put(String key, Object value, long ttl) {
+        final Object frozen = ScriptValues.freeze(value);
+        synchronized (entries) {
+            if (frozen == null) {
+                entries.remove(key);
+            } else {
+                entries.put(key, new Entry(frozen, expiresAt(ttl)));
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the given key, computing it with the given function when absent. The computed value
+     * expires after the default time to live.
+     */
+    public Object computeIfAbsent(String key, Function<String, Object> mappingFunction) {
+        return computeIfAbsent(key, mappingFunction, defaultTtl);
+    }
+
+    /**
+     * Returns the value of the given key, computing it with the given function when absent, and storing it unless
+     * <code>null</code>. The computed value expires after the given time to live in milliseconds (<code>0</code> for
+     * no expiry).
+     *
+     * When the value is being computed by another thread, waits for it rather than computing it again.
+     *
+     * @throws RejectedExecutionException if the value is still being computed after the load timeout
+     */
+    public Object computeIfAbsent(String key, Function<String, Object> mappingFunction, long ttl) {
+        for (;;) {
+            final Entry loading;
+            CompletableFuture<Void> pending = null;
+
+            synchronized (entries) {
+                Entry entry = present(key, System.nanoTime());
+                if (entry == null) {
+                    misses.increment();
+                    loading = new Entry(Thread.currentThread(), new CompletableFuture<>());
+                    entries.put(key, loading);
+                } else if (entry.loading == null) {
+                    hits.increment();
+                    return entry.value;
+                } else if (entry.loader == Thread.currentThread()) {
+                    throw new IllegalStateException("Recursive computation of the cache key " + key);
+                } else {
+                    loading = null;
+                    pending = entry.loading;
+                }
+            }
+
+            if (pending != null) {
+                // The value is looked up again once computed, or computed by this thread if the computation failed
+                await(key, pending);
+                continue;
+            }
+
+            try {
+                final Object value = ScriptValues.freeze(mappingFunction.apply(key));
+                synchronized (entries) {
+                    if (entries.get(key) == loading) {
+                        if (value == null) {
+                            entries.remove(key);
+                        } else {
+                            entries.put(key, new Entry(value, expiresAt(ttl)));
+                        }
+                    }
+                }
+                return value;
+            } catch (RuntimeException | Error ex) {
+                synchronized (entries) {
+                    if (entries.get(key) == loading) {
+                        entries.remove(key);
+                    }
+                }
+                throw ex;
+            } finally {
+                loading.loading.complete(null);
+            }
+        }
+    }
+
+    private void await(String key, CompletableFuture<Void> pending) {
+        try {
+            if (loadTimeout > 0) {
+                pending.get(loadTimeout, TimeUnit.MILLISECONDS);
+            } else {
+                pending.get();
+            }
+        } catch (TimeoutException ex) {
+            throw new RejectedExecutionException("The value of the cache key " + key + " is still being computed after "
+                    + loadTimeout + " ms");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for the value of the cache key " + key, ex);
+        } catch (ExecutionException ex) {
+            // Never completed exceptionally
+        }
+    }
+
+    /**
+     * Removes the given key, and returns its value.
+     */
+    public Object remove(String key) {
+        synchronized (entries) {
+            Entry entry = entries.remove(key);
+            return (entry != null && entry.loading == null && !entry.isExpired(System.nanoTime())) ?
+                    entry.value : null;
+        }
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the number of entries, expired entries not yet removed included.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Records that the cache has been handed to a script, see {@link #getIdleTime()}.
+     */
+    public void touch() {
+        lastAccess = System.nanoTime();
+    }
+
+    // Returns the entry of the given key, removing it if expired. Must be called while holding the lock
+    private Entry present(String key, long now) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isExpired(now)) {
+            entries.remove(key);
+            expirations.increment();
+            return null;
+        }
+        return entry;
+    }
+
+    private static long expiresAt(long ttl) {
+        return ttl > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl) : 0;
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public long getDefaultTtl() {
+        return defaultTtl;
+    }
+
+    @Override
+    public long getLoadTimeout() {
+        return loadTimeout;
+    }
+
+    @Override
+    public long getIdleTime() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastAccess);
+    }
+
+    @Override
+    public int getSize() {
+        return size();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    private static final class Entry {
+
+        private final Object value;
+        private final long expiresAt;
+
+        // Set while the value is being computed
+        private final Thread loader;
+        private final CompletableFuture<Void> loading;
+
+        Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.loader = null;
+            this.loading = null;
+        }
+
+        Entry(Thread loader, CompletableFuture<Void> loading) {
+            this.value = null;
+            this.expiresAt = 0;
+            this.loader = loader;
+            this.loading = loading;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != 0 && now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.cache;
+
+/**
+ * Management interface of a {@link SharedCache}.
+ *
+ * @author gr1d.io team
+ */
+public interface SharedCacheMXBean {
+
+    int getMaxSize();
+
+    long getDefaultTtl();
+
+    long getLoadTimeout();
+
+    /**
+     * Returns the time elapsed since the cache was last handed to a script, in milliseconds.
+     */
+    long getIdleTime();
+
+    int getSize();
+
+    long getHits();
+
+    long getMisses();
+
+    long getEvictions();
+
+    long getExpirations();
+}
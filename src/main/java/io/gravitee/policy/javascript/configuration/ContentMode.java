@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.configuration;
+
+/**
+ * Defines how the request and response content is handed to the content scripts.
+ *
+ * @author gr1d.io team
+ */
+public enum ContentMode {
+
+    /**
+     * The whole body is buffered then given to the script as a single content.
+     */
+    BUFFERED,
+
+    /**
+     * The script is evaluated once and registers callbacks invoked for each chunk of the body as it arrives, and
+     * at the end of the body.
+     */
+    STREAMING,
+
+    /**
+     * The whole body is buffered then given to the script both as a content and as a JSON view
+     * (<code>request.json</code> / <code>response.json</code>), parsed on first access. Objects and arrays returned by
+     * the script are serialized as JSON.
+     */
+    JSON,
+
+    /**
+     * The body is split into records as it arrives, according to the {@link RecordFormat}, and the script is
+     * evaluated for each record, whose output is written downstream right away.
+     */
+    RECORDS
+}
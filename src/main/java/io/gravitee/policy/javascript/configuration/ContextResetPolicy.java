@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.configuration;
+
+/**
+ * Defines how a pooled script context is cleaned before being handed to the next request.
+ *
+ * @author gr1d.io team
+ */
+public enum ContextResetPolicy {
+
+    /**
+     * The context is reused as is: globals defined by a script remain visible to the next requests.
+     */
+    NONE,
+
+    /**
+     * Globals defined by a script are removed (or set to undefined when they can not be deleted).
+     */
+    CLEAN,
+
+    /**
+     * The global scope is discarded and a new one is created for the next request.
+     */
+    RECREATE
+}
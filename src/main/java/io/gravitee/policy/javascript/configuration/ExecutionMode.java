@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.configuration;
+
+/**
+ * Defines which thread runs the request and response scripts.
+ *
+ * @author gr1d.io team
+ */
+public enum ExecutionMode {
+
+    /**
+     * The script is run by the thread handling the request, blocking it until the script completes.
+     */
+    INLINE,
+
+    /**
+     * The script is dispatched to a bounded pool of worker threads, and the policy chain is resumed once the script
+     * completes.
+     */
+    WORKER
+}
@@ -17,6 +17,9 @@ package io.gravitee.policy.javascript.configuration;
 
 import io.gravitee.policy.api.PolicyConfiguration;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * @author David BRASSELY (david.brassely at graviteesource.com)
  * @author GraviteeSource Team
@@ -33,6 +36,60 @@ public class JavaScriptPolicyConfiguration implements PolicyConfiguration {
 
     private String onRequestContentScript;
 
+    private ContextResetPolicy contextResetPolicy = ContextResetPolicy.CLEAN;
+
+    private ContentMode contentMode = ContentMode.BUFFERED;
+
+    private RecordFormat recordFormat = RecordFormat.NDJSON;
+
+    private int recordBatchSize = 1;
+
+    private long recordFlushLatency;
+
+    private long maxExecutionTime;
+
+    private ExecutionMode executionMode = ExecutionMode.INLINE;
+
+    private int maxPendingExecutions;
+
+    private ScriptEngineType engine = ScriptEngineType.NASHORN;
+
+    private List<Rule> onRequestRules = Collections.emptyList();
+
+    private List<Rule> onResponseRules = Collections.emptyList();
+
+    private boolean async;
+
+    private long asyncTimeout = 10000;
+
+    private boolean bodyCapture;
+
+    private int bodyCaptureSampleRate = 100;
+
+    private int bodyCaptureMaxSize = 4096;
+
+    private int warmUpIterations;
+
+    private String warmUpBody;
+
+    private boolean memoize;
+
+    private List<String> memoizeHeaders = Collections.emptyList();
+
+    private long memoizeTtl = 60000;
+
+    private int memoizeMaxSize = 1048576;
+
+    private boolean decodeContent;
+
+    private ScriptCondition onRequestCondition;
+
+    private ScriptCondition onResponseCondition;
+
+    private ScriptCondition onRequestContentCondition;
+
+    private ScriptCondition onResponseContentCondition;
+
     public String getOnRequestScript() {
         return onRequestScript;
     }
@@ -64,4 +121,289 @@ public class JavaScriptPolicyConfiguration implements PolicyConfiguration {
     public void setOnRequestContentScript(String onRequestContentScript) {
         this.onRequestContentScript = onRequestContentScript;
     }
+
+    public ContextResetPolicy getContextResetPolicy() {
+        return contextResetPolicy;
+    }
+
+    public void setContextResetPolicy(ContextResetPolicy contextResetPolicy) {
+        this.contextResetPolicy = contextResetPolicy;
+    }
+
+    public ContentMode getContentMode() {
+        return contentMode;
+    }
+
+    public void setContentMode(ContentMode contentMode) {
+        this.contentMode = contentMode;
+    }
+
+    public RecordFormat getRecordFormat() {
+        return recordFormat;
+    }
+
+    public void setRecordFormat(RecordFormat recordFormat) {
+        this.recordFormat = recordFormat;
+    }
+
+    /**
+     * Returns the number of records handed to each evaluation of the script in the {@link ContentMode#RECORDS} mode.
+     * With <code>1</code>, the script is evaluated for each record, which is given as the content.
+     */
+    public int getRecordBatchSize() {
+        return recordBatchSize;
+    }
+
+    public void setRecordBatchSize(int recordBatchSize) {
+        this.recordBatchSize = recordBatchSize;
+    }
+
+    /**
+     * Returns how long, in milliseconds, a partial batch of records waits for the next chunks of the body before being
+     * evaluated, or <code>0</code> to evaluate it at the end of each chunk.
+     */
+    public long getRecordFlushLatency() {
+        return recordFlushLatency;
+    }
+
+    public void setRecordFlushLatency(long recordFlushLatency) {
+        this.recordFlushLatency = recordFlushLatency;
+    }
+
+    /**
+     * Returns the time budget of a script execution, in milliseconds, or <code>0</code> for no limit.
+     */
+    public long getMaxExecutionTime() {
+        return maxExecutionTime;
+    }
+
+    public void setMaxExecutionTime(long maxExecutionTime) {
+        this.maxExecutionTime = maxExecutionTime;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    /**
+     * Returns the maximum number of executions of an API waiting for or running on a worker in the
+     * {@link ExecutionMode#WORKER} mode, or <code>0</code> for no limit other than the size of the worker queue.
+     */
+    public int getMaxPendingExecutions() {
+        return maxPendingExecutions;
+    }
+
+    public void setMaxPendingExecutions(int maxPendingExecutions) {
+        this.maxPendingExecutions = maxPendingExecutions;
+    }
+
+    public ScriptEngineType getEngine() {
+        return engine;
+    }
+
+    public void setEngine(ScriptEngineType engine) {
+        this.engine = engine;
+    }
+
+    public List<Rule> getOnRequestRules() {
+        return onRequestRules;
+    }
+
+    public void setOnRequestRules(List<Rule> onRequestRules) {
+        this.onRequestRules = onRequestRules;
+    }
+
+    public List<Rule> getOnResponseRules() {
+        return onResponseRules;
+    }
+
+    public void setOnResponseRules(List<Rule> onResponseRules) {
+        this.onResponseRules = onResponseRules;
+    }
+
+    /**
+     * Returns whether the request and response scripts are asynchronous: the policy chain is then resumed once the
+     * script calls <code>done()</code>, or once the promise it returns settles.
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    /**
+     * Returns the time an asynchronous script has to complete, in milliseconds, or <code>0</code> for no limit.
+     */
+    public long getAsyncTimeout() {
+        return asyncTimeout;
+    }
+
+    public void setAsyncTimeout(long asyncTimeout) {
+        this.asyncTimeout = asyncTimeout;
+    }
+
+    /**
+     * Returns whether the bodies given to the content scripts are sampled and logged, for diagnostic purpose.
+     */
+    public boolean isBodyCapture() {
+        return bodyCapture;
+    }
+
+    public void setBodyCapture(boolean bodyCapture) {
+        this.bodyCapture = bodyCapture;
+    }
+
+    /**
+     * Returns the sampling of the body capture: one body in this number is captured.
+     */
+    public int getBodyCaptureSampleRate() {
+        return bodyCaptureSampleRate;
+    }
+
+    public void setBodyCaptureSampleRate(int bodyCaptureSampleRate) {
+        this.bodyCaptureSampleRate = bodyCaptureSampleRate;
+    }
+
+    /**
+     * Returns the maximum number of bytes captured from a body, or <code>0</code> for no limit.
+     */
+    public int getBodyCaptureMaxSize() {
+        return bodyCaptureMaxSize;
+    }
+
+    public void setBodyCaptureMaxSize(int bodyCaptureMaxSize) {
+        this.bodyCaptureMaxSize = bodyCaptureMaxSize;
+    }
+
+    /**
+     * Returns the number of times each script is run against a stub request and response once the policy is
+     * deployed, before handling traffic, or <code>0</code> to only compile the scripts.
+     */
+    public int getWarmUpIterations() {
+        return warmUpIterations;
+    }
+
+    public void setWarmUpIterations(int warmUpIterations) {
+        this.warmUpIterations = warmUpIterations;
+    }
+
+    /**
+     * Returns the body given to the content scripts while warming up, or <code>null</code> for an empty JSON object
+     * (or a record holding one in the {@link ContentMode#RECORDS} mode).
+     */
+    public String getWarmUpBody() {
+        return warmUpBody;
+    }
+
+    public void setWarmUpBody(String warmUpBody) {
+        this.warmUpBody = warmUpBody;
+    }
+
+    /**
+     * Returns whether the outputs of the content scripts are memoized, keyed by the method and path of the request,
+     * the {@link #getMemoizeHeaders()} headers and the body, rather than running the scripts again on identical
+     * requests.
+     */
+    public boolean isMemoize() {
+        return memoize;
+    }
+
+    public void setMemoize(boolean memoize) {
+        this.memoize = memoize;
+    }
+
+    /**
+     * Returns the names of the request headers the content scripts depend on, which are part of the memoization key.
+     */
+    public List<String> getMemoizeHeaders() {
+        return memoizeHeaders;
+    }
+
+    public void setMemoizeHeaders(List<String> memoizeHeaders) {
+        this.memoizeHeaders = memoizeHeaders;
+    }
+
+    /**
+     * Returns the time a memoized output is reused, in milliseconds.
+     */
+    public long getMemoizeTtl() {
+        return memoizeTtl;
+    }
+
+    public void setMemoizeTtl(long memoizeTtl) {
+        this.memoizeTtl = memoizeTtl;
+    }
+
+    /**
+     * Returns the maximum size in bytes of the bodies and outputs memoized, or <code>0</code> for no limit.
+     */
+    public int getMemoizeMaxSize() {
+        return memoizeMaxSize;
+    }
+
+    public void setMemoizeMaxSize(int memoizeMaxSize) {
+        this.memoizeMaxSize = memoizeMaxSize;
+    }
+
+    /**
+     * Returns whether the bodies encoded with gzip or deflate (<code>Content-Encoding</code>) are decoded before being
+     * given to the content scripts, their output being encoded again.
+     */
+    public boolean isDecodeContent() {
+        return decodeContent;
+    }
+
+    public void setDecodeContent(boolean decodeContent) {
+        this.decodeContent = decodeContent;
+    }
+
+    /**
+     * Returns the condition under which the request script runs, or <code>null</code> to always run it.
+     */
+    public ScriptCondition getOnRequestCondition() {
+        return onRequestCondition;
+    }
+
+    public void setOnRequestCondition(ScriptCondition onRequestCondition) {
+        this.onRequestCondition = onRequestCondition;
+    }
+
+    /**
+     * Returns the condition under which the response script runs, or <code>null</code> to always run it.
+     */
+    public ScriptCondition getOnResponseCondition() {
+        return onResponseCondition;
+    }
+
+    public void setOnResponseCondition(ScriptCondition onResponseCondition) {
+        this.onResponseCondition = onResponseCondition;
+    }
+
+    /**
+     * Returns the condition under which the request content script runs, or <code>null</code> to always run it.
+     */
+    public ScriptCondition getOnRequestContentCondition() {
+        return onRequestContentCondition;
+    }
+
+    public void setOnRequestContentCondition(ScriptCondition onRequestContentCondition) {
+        this.onRequestContentCondition = onRequestContentCondition;
+    }
+
+    /**
+     * Returns the condition under which the response content script runs, or <code>null</code> to always run it.
+     */
+    public ScriptCondition getOnResponseContentCondition() {
+        return onResponseContentCondition;
+    }
+
+    public void setOnResponseContentCondition(ScriptCondition onResponseContentCondition) {
+        this.onResponseContentCondition = onResponseContentCondition;
+    }
 }
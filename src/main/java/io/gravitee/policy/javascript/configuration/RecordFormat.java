@@ -0,0 +1,34 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.configuration;
+
+/**
+ * Defines how a body is split into records in the {@link ContentMode#RECORDS} mode.
+ *
+ * @author gr1d.io team
+ */
+public enum RecordFormat {
+
+    /**
+     * Each non-empty line of the body is a record (newline-delimited JSON, or any line-oriented format).
+     */
+    NDJSON,
+
+    /**
+     * The body is a JSON array, each of its elements being a record.
+     */
+    JSON_ARRAY
+}
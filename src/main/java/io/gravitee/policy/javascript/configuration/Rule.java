@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.configuration;
+
+import io.gravitee.common.http.HttpStatusCode;
+
+/**
+ * A declarative rule, run in Java before the script of its phase, for the common cases which do not need a script:
+ * setting or removing a header, or rejecting a request, optionally under a {@link RuleCondition}.
+ *
+ * @author gr1d.io team
+ */
+public class Rule {
+
+    private RuleAction action;
+
+    private String header;
+
+    private String value;
+
+    private int status = HttpStatusCode.FORBIDDEN_403;
+
+    private String error;
+
+    private String contentType;
+
+    private RuleCondition condition;
+
+    public RuleAction getAction() {
+        return action;
+    }
+
+    public void setAction(RuleAction action) {
+        this.action = action;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    public void setHeader(String header) {
+        this.header = header;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public RuleCondition getCondition() {
+        return condition;
+    }
+
+    public void setCondition(RuleCondition condition) {
+        this.condition = condition;
+    }
+}
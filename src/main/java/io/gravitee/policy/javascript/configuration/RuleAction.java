@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.configuration;
+
+/**
+ * Action of a declarative {@link Rule}.
+ *
+ * @author gr1d.io team
+ */
+public enum RuleAction {
+
+    /**
+     * Replaces the values of the header with the rule value.
+     */
+    SET_HEADER,
+
+    /**
+     * Adds the rule value to the values of the header.
+     */
+    ADD_HEADER,
+
+    /**
+     * Removes the header.
+     */
+    REMOVE_HEADER,
+
+    /**
+     * Fails the request with the rule status, error and content type. The following rules and the script are not run.
+     */
+    REJECT
+}
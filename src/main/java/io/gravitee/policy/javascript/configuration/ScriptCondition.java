@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.configuration;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Condition under which the script of a phase runs, evaluated in Java before any script context is used. All the
+ * given criteria must match; a condition without criteria always matches.
+ *
+ * The path and the method are those of the request. The header and the content type are those of the request for the
+ * request phases, and of the response for the response phases.
+ *
+ * @author gr1d.io team
+ */
+public class ScriptCondition {
+
+    private String pathPrefix;
+
+    private String pathPattern;
+
+    private List<String> methods = Collections.emptyList();
+
+    private String header;
+
+    private String contentType;
+
+    /**
+     * Returns the prefix the path of the request must start with.
+     */
+    public String getPathPrefix() {
+        return pathPrefix;
+    }
+
+    public void setPathPrefix(String pathPrefix) {
+        this.pathPrefix = pathPrefix;
+    }
+
+    /**
+     * Returns the regular expression the whole path of the request must match.
+     */
+    public String getPathPattern() {
+        return pathPattern;
+    }
+
+    public void setPathPattern(String pathPattern) {
+        this.pathPattern = pathPattern;
+    }
+
+    /**
+     * Returns the methods of the requests the script runs for, or an empty list for any method.
+     */
+    public List<String> getMethods() {
+        return methods;
+    }
+
+    public void setMethods(List<String> methods) {
+        this.methods = methods;
+    }
+
+    /**
+     * Returns the header which must be present.
+     */
+    public String getHeader() {
+        return header;
+    }
+
+    public void setHeader(String header) {
+        this.header = header;
+    }
+
+    /**
+     * Returns the media type of the body, ie. <code>application/json</code>, its parameters (ie. the charset) being
+     * ignored.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.configuration;
+
+/**
+ * The JavaScript engines scripts can be run with.
+ *
+ * @author gr1d.io team
+ */
+public enum ScriptEngineType {
+
+    /**
+     * Nashorn, as built in the JDK up to Java 14 or provided by the standalone library afterwards.
+     */
+    NASHORN,
+
+    /**
+     * GraalJS, with the Nashorn compatibility mode enabled. Scripts are only optimized when running on GraalVM, and
+     * interpreted otherwise.
+     */
+    GRAALJS
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.context;
+
+import io.gravitee.policy.javascript.PolicyResult;
+import io.gravitee.policy.javascript.configuration.ContextResetPolicy;
+import io.gravitee.policy.javascript.engine.Script;
+import io.gravitee.policy.javascript.engine.ScriptScope;
+import io.gravitee.policy.javascript.model.ContentAwareRequest;
+import io.gravitee.policy.javascript.model.ContentAwareResponse;
+
+import javax.script.ScriptException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A script context owning its own global scope, handed to a single request at a time by the {@link ScriptContextPool}.
+ *
+ * The objects bound to the script variables are owned by the context and reused by each request leasing it, so that
+ * running a script does not allocate them again.
+ *
+ * @author gr1d.io team
+ */
+public final class PooledScriptContext {
+
+    private final ScriptScope scope;
+
+    private final ContentAwareRequest request = new ContentAwareRequest(null, null);
+    private final ContentAwareResponse response = new ContentAwareResponse(null, null);
+    private final PolicyResult result = new PolicyResult();
+
+    // Exports of the modules evaluated in the global scope, lost when the scope is recreated
+    private final Map<String, Object> modules = new HashMap<>();
+
+    PooledScriptContext(ScriptScope scope) {
+        this.scope = scope;
+    }
+
+    /**
+     * Binds a variable to the global scope. Unlike globals defined by scripts, variables are kept when the context is
+     * reset.
+     */
+    public void setVariable(String name, Object value) {
+        scope.bind(name, value);
+    }
+
+    public Object execute(Script script) throws ScriptException {
+        return scope.execute(script);
+    }
+
+    /**
+     * Aborts the script being executed by another thread, when supported by the engine.
+     */
+    public void cancel() {
+        scope.cancel();
+    }
+
+    public boolean isCancellable() {
+        return scope.isCancellable();
+    }
+
+    public ContentAwareRequest getRequest() {
+        return request;
+    }
+
+    public ContentAwareResponse getResponse() {
+        return response;
+    }
+
+    public PolicyResult getResult() {
+        return result;
+    }
+
+    /**
+     * Returns the exports of the given module if it has been evaluated in the global scope, or <code>null</code>.
+     */
+    public Object getModule(String name) {
+        return modules.get(name);
+    }
+
+    public void putModule(String name, Object exports) {
+        modules.put(name, exports);
+    }
+
+    void reset(ContextResetPolicy resetPolicy) {
+        // Do not retain the request, nor its body, while the context is idle
+        request.reset(null, null);
+        response.reset(null, null);
+        result.reset();
+
+        if (resetPolicy == ContextResetPolicy.RECREATE) {
+            scope.recreate();
+            modules.clear();
+        } else if (resetPolicy == ContextResetPolicy.CLEAN) {
+            scope.clean();
+        }
+    }
+
+    void dispose() {
+        scope.dispose();
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.context;
+
+import io.gravitee.policy.javascript.configuration.ContextResetPolicy;
+import io.gravitee.policy.javascript.engine.JavaScriptEngine;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Bounded pool of {@link PooledScriptContext}, each of them owning an isolated global scope.
+ * The {@code initializer} is called once for each created context, ie. to bind the variables it owns.
+ *
+ * Contexts are created lazily up to {@code maxSize}. Once they are all in use, acquisitions fail at once, unless
+ * {@code acquireTimeout} is positive, in which case callers wait up to that time for a context to be released: as the
+ * caller is blocked meanwhile, waiting must not be enabled when scripts are run by the gateway event loops.
+ *
+ * An overflowing pool rather creates a new context when they are all in use, and disposes of the contexts released
+ * while {@code maxSize} of them are already idle: it suits contexts held across I/O (ie. by a streamed body), whose
+ * number can not be bounded without stalling the other requests.
+ *
+ * @author gr1d.io team
+ */
+public final class ScriptContextPool implements ScriptContextPoolMXBean {
+
+    private final JavaScriptEngine engine;
+    private final Consumer<PooledScriptContext> initializer;
+    private final int maxSize;
+    private final long acquireTimeout;
+    private final boolean overflow;
+    private final BlockingQueue<PooledScriptContext> idle;
+
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+    private final LongAdder totalWaitTime = new LongAdder();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
+    public ScriptContextPool(JavaScriptEngine engine, Consumer<PooledScriptContext> initializer, int maxSize,
+                             long acquireTimeout) {
+        this(engine, initializer, maxSize, acquireTimeout, false);
+    }
+
+    private ScriptContextPool(JavaScriptEngine engine, Consumer<PooledScriptContext> initializer, int maxSize,
+                              long acquireTimeout, boolean overflow) {
+        this.engine = engine;
+        this.initializer = initializer;
+        this.maxSize = maxSize;
+        this.acquireTimeout = acquireTimeout;
+        this.overflow = overflow;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    /**
+     * Returns a pool creating contexts beyond {@code maxIdle} rather than failing, and keeping at most
+     * {@code maxIdle} idle contexts.
+     */
+    public static ScriptContextPool overflowing(JavaScriptEngine engine, Consumer<PooledScriptContext> initializer,
+                                                int maxIdle) {
+        return new ScriptContextPool(engine, initializer, maxIdle, 0, true);
+    }
+
+    /**
+     * Leases an idle context, creating one when none is idle, and fails with a {@link TimeoutException} when they are
+     * all in use (after waiting up to {@code acquireTimeout} milliseconds, when positive).
+     */
+    public PooledScriptContext acquire() throws TimeoutException, InterruptedException {
+        long start = System.nanoTime();
+
+        PooledScriptContext context = idle.poll();
+        if (context == null) {
+            context = create();
+            if (context == null && overflow) {
+                overflows.increment();
+                created.incrementAndGet();
+                context = newContext();
+            } else if (context == null) {
+                context = acquireTimeout > 0 ? idle.poll(acquireTimeout, TimeUnit.MILLISECONDS) : null;
+                if (context == null) {
+                    timeouts.increment();
+                    throw new TimeoutException(acquireTimeout > 0
+                            ? "No script context available after " + acquireTimeout + " ms"
+                            : "No script context available, the " + maxSize + " script contexts are in use");
+                }
+            }
+        }
+
+        long waitTime = System.nanoTime() - start;
+        totalWaitTime.add(waitTime);
+        maxWaitTime.accumulateAndGet(waitTime, Math::max);
+        acquisitions.increment();
+        inUse.incrementAndGet();
+
+        return context;
+    }
+
+    public void release(PooledScriptContext context, ContextResetPolicy resetPolicy) {
+        try {
+            context.reset(resetPolicy);
+        } finally {
+            inUse.decrementAndGet();
+            if (!idle.offer(context)) {
+                // Created beyond the size of the pool
+                context.dispose();
+                created.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Drops a context which can not be reused (ie. because its script has been aborted), leaving room for a new one.
+     */
+    public void discard(PooledScriptContext context) {
+        try {
+            context.dispose();
+        } catch (RuntimeException ex) {
+            // The context is dropped anyway
+        }
+        inUse.decrementAndGet();
+        created.decrementAndGet();
+        discarded.increment();
+    }
+
+    private PooledScriptContext create() {
+        int current;
+        do {
+            current = created.get();
+            if (current >= maxSize) {
+                return null;
+            }
+        } while (!created.compareAndSet(current, current + 1));
+
+        return newContext();
+    }
+
+    private PooledScriptContext newContext() {
+        try {
+            PooledScriptContext context = new PooledScriptContext(engine.createScope());
+            initializer.accept(context);
+            return context;
+        } catch (RuntimeException ex) {
+            created.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public int getCreated() {
+        return created.get();
+    }
+
+    @Override
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    @Override
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getDiscarded() {
+        return discarded.sum();
+    }
+
+    @Override
+    public long getOverflows() {
+        return overflows.sum();
+    }
+
+    @Override
+    public long getTotalWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitTime.sum());
+    }
+
+    @Override
+    public long getMaxWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get());
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.diagnostics;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.javascript.Phase;
+import io.gravitee.policy.javascript.utils.Buffers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Diagnostic capture of the bodies given to the content scripts.
+ *
+ * One body in {@code sampleRate} of each API is captured, truncated to {@code maxSize} bytes, and logged at the
+ * <code>INFO</code> level by the <code>io.gravitee.policy.javascript.capture</code> logger. Logging is done by a
+ * single background thread, so that the threads handling the requests never wait on the appenders: captures are
+ * dropped rather than queued once {@code queueSize} of them are waiting.
+ *
+ * The bodies which are streamed rather than buffered are captured chunk by chunk through a {@link Capture}: only their
+ * first {@code maxSize} bytes are kept, and they are logged once the body has been read.
+ *
+ * @author gr1d.io team
+ */
+public final class BodyCapture implements BodyCaptureMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("io.gravitee.policy.javascript.capture");
+
+    private final ThreadPoolExecutor writer;
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    private final LongAdder captured = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public BodyCapture(int queueSize) {
+        this.writer = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "gravitee-javascript-capture");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.writer.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Captures the given body of the given API when it is sampled, keeping at most {@code maxSize} bytes of it (no
+     * limit when not positive).
+     */
+    public void capture(String api, Phase phase, Buffer body, int sampleRate, int maxSize) {
+        if (body != null) {
+            Capture capture = start(api, phase, sampleRate, maxSize);
+            if (capture != null) {
+                capture.write(body);
+                capture.end();
+            }
+        }
+    }
+
+    /**
+     * Starts the capture of a body of the given API read chunk by chunk, or returns <code>null</code> when the body
+     * is not sampled.
+     */
+    public Capture start(String api, Phase phase, int sampleRate, int maxSize) {
+        if (!LOGGER.isInfoEnabled() || !sampled(api, sampleRate)) {
+            return null;
+        }
+        return new Capture(api, phase, maxSize);
+    }
+
+    private boolean sampled(String api, int sampleRate) {
+        if (sampleRate <= 1) {
+            return true;
+        }
+
+        AtomicLong counter = counters.get(api);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(api, key -> new AtomicLong());
+        }
+        return counter.getAndIncrement() % sampleRate == 0;
+    }
+
+    /**
+     * The capture of a sampled body, keeping the first bytes of its chunks. A capture is not thread-safe.
+     */
+    public final class Capture {
+
+        private final String api;
+        private final Phase phase;
+        private final int maxSize;
+
+        private byte[] content = new byte[0];
+        private int size;
+        private long length;
+        private boolean ended;
+
+        private Capture(String api, Phase phase, int maxSize) {
+            this.api = api;
+            this.phase = phase;
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * Keeps the bytes of the given chunk, up to the max size of the capture.
+         */
+        public void write(Buffer chunk) {
+            int chunkLength = chunk.length();
+            length += chunkLength;
+
+            // Only the kept bytes are copied, the logging thread decodes them
+            int kept = (maxSize > 0) ? Math.min(chunkLength, maxSize - size) : chunkLength;
+            if (kept > 0) {
+                if (size + kept > content.length) {
+                    content = Arrays.copyOf(content, Math.max(size + kept,
+                            (maxSize > 0) ? Math.min(content.length * 2, maxSize) : content.length * 2));
+                }
+                ByteBuffer bytes = Buffers.view(chunk);
+                bytes.get(content, size, kept);
+                size += kept;
+            }
+        }
+
+        /**
+         * Logs the bytes kept so far, once the body has been read, or its processing failed.
+         */
+        public void end() {
+            if (ended) {
+                return;
+            }
+            ended = true;
+
+            final byte[] content = this.content;
+            final int size = this.size;
+            final long length = this.length;
+            try {
+                writer.execute(() -> LOGGER.info("{} {} body ({} bytes{}): {}", api, phase, length,
+                        size < length ? ", truncated" : "",
+                        new String(content, 0, size, StandardCharsets.UTF_8).replace('\n', ' ')));
+                captured.increment();
+            } catch (RejectedExecutionException ex) {
+                dropped.increment();
+            }
+        }
+    }
+
+    @Override
+    public int getQueued() {
+        return writer.getQueue().size();
+    }
+
+    @Override
+    public long getCaptured() {
+        return captured.sum();
+    }
+
+    @Override
+    public long getDropped() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.encoding;
+
+import java.util.Locale;
+
+/**
+ * The content codings of a body (<code>Content-Encoding</code>) the policy can decode and encode again.
+ *
+ * @author gr1d.io team
+ */
+public enum ContentCoding {
+
+    GZIP,
+
+    DEFLATE;
+
+    /**
+     * Returns the coding of the given <code>Content-Encoding</code> header, or <code>null</code> when the body is
+     * not encoded, or encoded with an unsupported or more than one coding.
+     */
+    public static ContentCoding of(String contentEncoding) {
+        if (contentEncoding == null) {
+            return null;
+        }
+
+        switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "gzip":
+            case "x-gzip":
+                return GZIP;
+            case "deflate":
+                return DEFLATE;
+            default:
+                return null;
+        }
+    }
+
+    public ContentDecoder newDecoder() {
+        return new ContentDecoder(this == GZIP);
+    }
+
+    public ContentEncoder newEncoder(int level) {
+        return new ContentEncoder(this == GZIP, level);
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.encoding;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Streaming decoder of a gzip or deflate encoded body: each chunk is inflated as it arrives, through a fixed size
+ * buffer, so that the encoded body is never held whole.
+ *
+ * Gzip members are checked against their CRC and length, and concatenated members are decoded in turn. Deflate bodies
+ * are expected in the zlib format, but raw deflate data, as sent by some servers, is also accepted.
+ *
+ * @author gr1d.io team
+ */
+public final class ContentDecoder {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final boolean gzip;
+    private final byte[] output = new byte[BUFFER_SIZE];
+    private final CRC32 crc = new CRC32();
+    private Inflater inflater;
+
+    // Bytes of a gzip header or trailer not complete yet
+    private byte[] pending = new byte[0];
+    private boolean header;
+    private boolean trailer;
+    private boolean empty = true;
+
+    ContentDecoder(boolean gzip) {
+        this.gzip = gzip;
+        this.header = gzip;
+    }
+
+    /**
+     * Returns the decoded content of the given chunk, which may be empty.
+     */
+    public Buffer decode(Buffer chunk) throws IOException {
+        final Buffer decoded = Buffer.buffer();
+        byte[] input = chunk.getBytes();
+        int offset = 0;
+        empty &= input.length == 0;
+
+        while (offset < input.length || (inflater != null && !inflater.needsInput() && !inflater.finished())) {
+            if (header || trailer) {
+                byte[] data = concat(pending, input, offset);
+                int length = header ? headerLength(data) : (data.length >= 8 ? 8 : -1);
+                if (length < 0) {
+                    pending = data;
+                    return decoded;
+                }
+                if (header) {
+                    startMember();
+                } else {
+                    checkTrailer(data);
+                }
+                input = Arrays.copyOfRange(data, length, data.length);
+                offset = 0;
+                pending = new byte[0];
+                continue;
+            }
+
+            if (inflater == null) {
+                startDeflate(input[offset]);
+            }
+
+            if (inflater.needsInput()) {
+                inflater.setInput(input, offset, input.length - offset);
+                offset = input.length;
+            }
+            inflate(decoded);
+
+            if (inflater.finished()) {
+                // Remaining input belongs to the trailer, or to the next member
+                int remaining = inflater.getRemaining();
+                offset = input.length - remaining;
+                if (!gzip) {
+                    if (remaining > 0) {
+                        throw new IOException("Unexpected data after the end of the deflate stream");
+                    }
+                    return decoded;
+                }
+                trailer = true;
+            }
+        }
+
+        return decoded;
+    }
+
+    /**
+     * Checks that the whole body has been decoded, failing when it is truncated, and releases the decoder. An empty
+     * body is complete.
+     */
+    public void finish() throws IOException {
+        final boolean complete = empty || (gzip ? (header && pending.length == 0 && inflater != null)
+                : (inflater != null && inflater.finished()));
+        end();
+        if (!complete) {
+            throw new IOException("Unexpected end of the encoded body");
+        }
+    }
+
+    /**
+     * Releases the native memory of the decoder, which can not be used anymore. Must be called when the body is not
+     * decoded until {@link #finish()}, ie. when decoding fails or is aborted; calling it again has no effect.
+     */
+    public void end() {
+        if (inflater != null) {
+            inflater.end();
+        }
+    }
+
+    private void inflate(Buffer decoded) throws IOException {
+        try {
+            int length;
+            while ((length = inflater.inflate(output)) > 0) {
+                if (gzip) {
+                    crc.update(output, 0, length);
+                }
+                decoded.appendBuffer(Buffer.buffer(Arrays.copyOf(output, length)));
+            }
+            if (inflater.needsDictionary()) {
+                throw new IOException("Deflate streams using a preset dictionary are not supported");
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Invalid encoded body: " + ex.getMessage(), ex);
+        }
+    }
+
+    private void startDeflate(byte first) {
+        // A zlib stream starts with the deflate method, while the first bits of raw deflate data are a block header
+        inflater = new Inflater(gzip || (first & 0x0f) != 8);
+    }
+
+    private void startMember() {
+        header = false;
+        crc.reset();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        } else {
+            inflater.reset();
+        }
+    }
+
+    private void checkTrailer(byte[] data) throws IOException {
+        if (readInt(data, 0) != (int) crc.getValue() || readInt(data, 4) != (int) inflater.getBytesWritten()) {
+            throw new IOException("Corrupted gzip body: checksum mismatch");
+        }
+        trailer = false;
+        header = true;
+    }
+
+    /**
+     * Returns the length of the gzip header at the start of the given data, or <code>-1</code> if it is not complete.
+     */
+    private static int headerLength(byte[] data) throws IOException {
+        if (data.length < 10) {
+            return -1;
+        } else if ((data[0] & 0xff | (data[1] & 0xff) << 8) != GZIP_MAGIC || data[2] != 8) {
+            throw new IOException("Invalid gzip body");
+        }
+
+        final int flags = data[3];
+        int length = 10;
+        if ((flags & FEXTRA) != 0) {
+            if (data.length < length + 2) {
+                return -1;
+            }
+            length += 2 + (data[length] & 0xff | (data[length + 1] & 0xff) << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            length = skipString(data, length);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            length = skipString(data, length);
+        }
+        if ((flags & FHCRC) != 0 && length >= 0) {
+            length += 2;
+        }
+        return (length >= 0 && length <= data.length) ? length : -1;
+    }
+
+    private static int skipString(byte[] data, int offset) {
+        if (offset < 0) {
+            return -1;
+        }
+        for (int i = offset; i < data.length; i++) {
+            if (data[i] == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return data[offset] & 0xff | (data[offset + 1] & 0xff) << 8 | (data[offset + 2] & 0xff) << 16
+                | (data[offset + 3] & 0xff) << 24;
+    }
+
+    private static byte[] concat(byte[] pending, byte[] input, int offset) {
+        byte[] data = Arrays.copyOf(pending, pending.length + input.length - offset);
+        System.arraycopy(input, offset, data, pending.length, input.length - offset);
+        return data;
+    }
+}
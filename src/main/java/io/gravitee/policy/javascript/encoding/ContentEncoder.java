@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.encoding;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Streaming gzip or deflate (zlib format) encoder, deflating each chunk as it is written through a fixed size buffer.
+ *
+ * @author gr1d.io team
+ */
+public final class ContentEncoder {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final boolean gzip;
+    private final Deflater deflater;
+    private final byte[] output = new byte[BUFFER_SIZE];
+    private final CRC32 crc = new CRC32();
+    private boolean started;
+
+    ContentEncoder(boolean gzip, int level) {
+        this.gzip = gzip;
+        this.deflater = new Deflater(level, gzip);
+    }
+
+    /**
+     * Returns the encoded form of the given chunk. When {@code flush} is set, all the data written so far is encoded,
+     * so that the chunk can be decoded as soon as it is received, at the cost of a lower compression ratio.
+     */
+    public Buffer encode(Buffer chunk, boolean flush) {
+        final Buffer encoded = start();
+        final byte[] input = chunk.getBytes();
+        if (gzip) {
+            crc.update(input, 0, input.length);
+        }
+
+        deflater.setInput(input);
+        deflate(encoded, flush ? Deflater.SYNC_FLUSH : Deflater.NO_FLUSH);
+        return encoded;
+    }
+
+    /**
+     * Returns the end of the encoded content, and releases the encoder.
+     */
+    public Buffer finish() {
+        try {
+            final Buffer encoded = start();
+            deflater.finish();
+            while (!deflater.finished()) {
+                append(encoded, deflater.deflate(output));
+            }
+
+            if (gzip) {
+                byte[] trailer = new byte[8];
+                writeInt(trailer, 0, (int) crc.getValue());
+                writeInt(trailer, 4, (int) deflater.getBytesRead());
+                encoded.appendBuffer(Buffer.buffer(trailer));
+            }
+            return encoded;
+        } finally {
+            end();
+        }
+    }
+
+    /**
+     * Releases the native memory of the encoder, which can not be used anymore. Must be called when the content is
+     * not encoded until {@link #finish()}, ie. when the body fails or is aborted; calling it again has no effect.
+     */
+    public void end() {
+        deflater.end();
+    }
+
+    private Buffer start() {
+        if (!started) {
+            started = true;
+            if (gzip) {
+                return Buffer.buffer(GZIP_HEADER.clone());
+            }
+        }
+        return Buffer.buffer();
+    }
+
+    private void deflate(Buffer encoded, int flush) {
+        int length;
+        do {
+            length = deflater.deflate(output, 0, output.length, flush);
+            append(encoded, length);
+        } while (length == output.length || !deflater.needsInput());
+    }
+
+    private void append(Buffer encoded, int length) {
+        if (length > 0) {
+            encoded.appendBuffer(Buffer.buffer(Arrays.copyOf(output, length)));
+        }
+    }
+
+    private static void writeInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) value;
+        data[offset + 1] = (byte) (value >> 8);
+        data[offset + 2] = (byte) (value >> 16);
+        data[offset + 3] = (byte) (value >> 24);
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.engine;
+
+import javax.script.ScriptException;
+
+/**
+ * A JavaScript engine the policy runs its scripts with.
+ *
+ * Scripts are compiled once by the engine, then executed in {@link ScriptScope}s: isolated global scopes, each of them
+ * used by a single thread at a time.
+ *
+ * @author gr1d.io team
+ */
+public interface JavaScriptEngine {
+
+    /**
+     * Returns the name of the engine, ie. <code>nashorn</code>.
+     */
+    String getName();
+
+    /**
+     * Returns the version of the engine, which identifies the format of the scripts it compiles.
+     */
+    String getVersion();
+
+    /**
+     * Compiles the given source, failing with a {@link ScriptException} when it is not valid.
+     */
+    Script compile(String source) throws ScriptException;
+
+    /**
+     * Creates a new global scope.
+     */
+    ScriptScope createScope();
+
+    /**
+     * Releases the resources held by the engine. Its scripts and scopes can no longer be used afterwards.
+     */
+    void dispose();
+}
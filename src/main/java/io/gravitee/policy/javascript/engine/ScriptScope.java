@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.engine;
+
+import javax.script.ScriptException;
+
+/**
+ * An isolated global scope in which scripts are executed. A scope must not be used by several threads at once.
+ *
+ * @author gr1d.io team
+ */
+public interface ScriptScope {
+
+    /**
+     * Binds a variable to the global scope. Unlike globals defined by scripts, variables are kept when the scope is
+     * cleaned or recreated.
+     */
+    void bind(String name, Object value);
+
+    /**
+     * Executes the given script, and returns its result converted to a Java value. <code>undefined</code> may be
+     * returned as is, see {@link io.gravitee.policy.javascript.utils.ScriptValues#isUndefined(Object)}.
+     */
+    Object execute(Script script) throws ScriptException;
+
+    /**
+     * Removes the globals defined by the scripts, and restores the variables they may have assigned.
+     */
+    void clean();
+
+    /**
+     * Replaces the global scope by a new one, only holding the variables.
+     */
+    void recreate();
+
+    /**
+     * Aborts the script currently executed by another thread, when supported by the engine. The scope can no longer be
+     * used afterwards.
+     */
+    void cancel();
+
+    /**
+     * Returns <code>true</code> if {@link #cancel()} aborts the running script.
+     */
+    boolean isCancellable();
+
+    /**
+     * Releases the resources held by the scope.
+     */
+    void dispose();
+}
@@ -0,0 +1,267 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.engine.graaljs;
+
+import io.gravitee.policy.javascript.engine.JavaScriptEngine;
+import io.gravitee.policy.javascript.engine.Script;
+import io.gravitee.policy.javascript.engine.ScriptScope;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+
+import javax.script.ScriptException;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * GraalJS engine, based on the GraalVM polyglot API.
+ *
+ * All the scopes share the same polyglot {@link Engine}, so that a script is parsed (and, on GraalVM, optimized) once
+ * for all the contexts running it. Scripts are run with the Nashorn compatibility mode enabled, so that they can access
+ * Java bean properties (ie. <code>request.headers</code>) as with Nashorn.
+ *
+ * Scripts may only look up the host classes (ie. with <code>Java.type</code>) of an allow-list, and can not reflect on
+ * the classes of the objects bound to them.
+ *
+ * @author gr1d.io team
+ */
+public final class GraalJsEngine implements JavaScriptEngine {
+
+    static final String LANGUAGE = "js";
+
+    private static final String SOURCE_NAME = "policy.js";
+
+    private static final String DEVELOPMENT_VERSION = "Development Build";
+    private static final String LANGUAGE_CLASS = "com.oracle.truffle.js.lang.JavaScriptLanguage";
+
+    // Host classes scripts may look up, see classFilter(String): the classes the documented scripts use by default
+    private static final String ALLOWED_CLASSES = System.getProperty("gravitee.policy.javascript.graaljs.allowedClasses",
+            "io.gravitee.policy.javascript.PolicyResult,io.gravitee.gateway.api.ExecutionContext");
+
+    private final Engine engine;
+    private final HostAccess hostAccess;
+    private final Predicate<String> classFilter;
+
+    // Context only used to parse the scripts, so that syntax errors are reported on compilation
+    private final Context parser;
+
+    public GraalJsEngine() {
+        this(ALLOWED_CLASSES);
+    }
+
+    GraalJsEngine(String allowedClasses) {
+        this.engine = Engine.newBuilder()
+                .option("engine.WarnInterpreterOnly", "false")
+                .build();
+        // Script arrays are converted to lists rather than to maps indexed by position. Classes and class loaders
+        // are opaque, so that scripts can not reach other classes through the objects bound to them.
+        this.hostAccess = HostAccess.newBuilder(HostAccess.ALL)
+                .denyAccess(Class.class)
+                .denyAccess(ClassLoader.class)
+                .targetTypeMapping(Value.class, Object.class, Value::hasArrayElements, value -> value.as(List.class))
+                .build();
+        this.classFilter = classFilter(allowedClasses);
+        this.parser = newContext();
+    }
+
+    @Override
+    public String getName() {
+        return "graaljs";
+    }
+
+    @Override
+    public String getVersion() {
+        final String version = engine.getVersion();
+        if (!DEVELOPMENT_VERSION.equals(version)) {
+            return version;
+        }
+
+        // Outside GraalVM, the engine is not given a release version: fall back to the name of the jar of the
+        // language (ie. js-21.3.10.jar)
+        try {
+            CodeSource source = Class.forName(LANGUAGE_CLASS).getProtectionDomain().getCodeSource();
+            if (source != null && source.getLocation() != null) {
+                String path = source.getLocation().getPath();
+                return path.substring(path.lastIndexOf('/', path.length() - 2) + 1).replaceAll("\\.jar/?$", "");
+            }
+        } catch (ClassNotFoundException | SecurityException ex) {
+            // Fall back to the version of the engine
+        }
+        return version;
+    }
+
+    @Override
+    public Script compile(String source) throws ScriptException {
+        // The script is parsed as written first, so that syntax errors (ie. unbalanced braces) are reported against it
+        // rather than against the block below
+        parse(Source.newBuilder(LANGUAGE, source, SOURCE_NAME).buildLiteral());
+
+        // Top-level let, const and class declarations can not be removed from a global scope, and could not be
+        // declared again by the next execution: the script is run as a block, which scopes them to the execution
+        // while keeping its completion value. Its directive prologue (ie. 'use strict') is kept ahead of the block, as
+        // directives are ignored within a block. No line is added so that the line numbers are kept.
+        int prologue = directivePrologueEnd(source);
+        String block = source.substring(0, prologue) + (prologue > 0 && source.charAt(prologue - 1) != ';' ? ";{" : "{")
+                + source.substring(prologue) + "\n}";
+        Source compiled = Source.newBuilder(LANGUAGE, block, SOURCE_NAME).cached(true).buildLiteral();
+        parse(compiled);
+
+        return new GraalJsScript(compiled);
+    }
+
+    private void parse(Source source) throws ScriptException {
+        synchronized (parser) {
+            try {
+                parser.parse(source);
+            } catch (PolyglotException ex) {
+                throw GraalJsScope.toScriptException(ex);
+            }
+        }
+    }
+
+    /**
+     * Returns the end of the directive prologue of the given script: the string literal statements (ie.
+     * <code>'use strict';</code>) it starts with, along with the comments preceding them.
+     */
+    static int directivePrologueEnd(String source) {
+        int end = 0;
+        int index = skipBlanks(source, 0, true);
+
+        while (index < source.length() && (source.charAt(index) == '\'' || source.charAt(index) == '"')) {
+            // String literal
+            char quote = source.charAt(index++);
+            while (index < source.length() && source.charAt(index) != quote) {
+                char c = source.charAt(index++);
+                if (c == '\n' || c == '\r') {
+                    return end;
+                } else if (c == '\\') {
+                    index++;
+                }
+            }
+            if (index++ >= source.length()) {
+                return end;
+            }
+
+            // Ended by a semicolon, a line terminator or the end of the script, otherwise an expression
+            index = skipBlanks(source, index, false);
+            if (index < source.length() && source.charAt(index) == ';') {
+                index++;
+            } else if (index < source.length() && source.charAt(index) != '\n' && source.charAt(index) != '\r') {
+                return end;
+            }
+            end = index;
+            index = skipBlanks(source, index, true);
+        }
+
+        return end;
+    }
+
+    /**
+     * Skips the white spaces and comments from the given index, line terminators included or not.
+     */
+    private static int skipBlanks(String source, int index, boolean lines) {
+        while (index < source.length()) {
+            char c = source.charAt(index);
+            if (c == '\n' || c == '\r') {
+                if (!lines) {
+                    return index;
+                }
+                index++;
+            } else if (Character.isWhitespace(c) || c == '\u00a0' || c == '\ufeff') {
+                index++;
+            } else if (source.startsWith("//", index)) {
+                int line = index;
+                while (line < source.length() && source.charAt(line) != '\n' && source.charAt(line) != '\r') {
+                    line++;
+                }
+                index = line;
+            } else if (source.startsWith("/*", index)) {
+                int close = source.indexOf("*/", index + 2);
+                if (close < 0) {
+                    return index;
+                }
+                index = close + 2;
+            } else {
+                return index;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns a filter of the host class names matching the given comma-separated list: a class name matches the class
+     * and its nested classes, and a package followed by <code>.*</code> matches the classes of the package and of its
+     * sub-packages.
+     */
+    static Predicate<String> classFilter(String allowedClasses) {
+        final List<String> classes = new ArrayList<>();
+        final List<String> packages = new ArrayList<>();
+        for (String allowed : allowedClasses.split(",")) {
+            allowed = allowed.trim();
+            if (allowed.endsWith(".*")) {
+                packages.add(allowed.substring(0, allowed.length() - 1));
+            } else if (!allowed.isEmpty()) {
+                classes.add(allowed);
+            }
+        }
+
+        return className -> {
+            for (String allowed : classes) {
+                // Nested classes are looked up by their binary name or by their canonical name
+                if (className.startsWith(allowed) && (className.length() == allowed.length()
+                        || className.charAt(allowed.length()) == '$' || className.charAt(allowed.length()) == '.')) {
+                    return true;
+                }
+            }
+            for (String allowed : packages) {
+                if (className.startsWith(allowed)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    @Override
+    public ScriptScope createScope() {
+        return new GraalJsScope(this);
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (parser) {
+            parser.close();
+        }
+        engine.close();
+    }
+
+    Context newContext() {
+        return Context.newBuilder(LANGUAGE)
+                .engine(engine)
+                .allowHostAccess(hostAccess)
+                .allowHostClassLookup(classFilter)
+                .allowExperimentalOptions(true)
+                .option("js.nashorn-compat", "true")
+                // The Nashorn compatibility mode defaults to ECMAScript 5, which lacks promises
+                .option("js.ecmascript-version", "2021")
+                .build();
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.engine.graaljs;
+
+import io.gravitee.policy.javascript.engine.Script;
+import io.gravitee.policy.javascript.engine.ScriptScope;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.SourceSection;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyExecutable;
+
+import javax.script.ScriptException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A GraalJS global scope, backed by its own polyglot {@link Context}.
+ *
+ * @author gr1d.io team
+ */
+final class GraalJsScope implements ScriptScope {
+
+    private final GraalJsEngine engine;
+    private final Map<String, Object> variables = new HashMap<>();
+    private Context context;
+    private Value bindings;
+
+    GraalJsScope(GraalJsEngine engine) {
+        this.engine = engine;
+        this.initGlobalScope();
+    }
+
+    @Override
+    public void bind(String name, Object value) {
+        variables.put(name, value);
+        bindings.putMember(name, value);
+    }
+
+    @Override
+    public Object execute(Script script) throws ScriptException {
+        try {
+            return toJava(context.eval(((GraalJsScript) script).getSource()));
+        } catch (PolyglotException ex) {
+            // Java exceptions not caught by the script are rethrown as is, as Nashorn does (ie. a rejection)
+            if (ex.isHostException() && ex.asHostException() instanceof RuntimeException) {
+                throw (RuntimeException) ex.asHostException();
+            }
+            throw toScriptException(ex);
+        }
+    }
+
+    @Override
+    public void clean() {
+        List<String> keys = new ArrayList<>(bindings.getMemberKeys());
+        if (keys.size() != variables.size()) {
+            for (String key : keys) {
+                if (!variables.containsKey(key)) {
+                    try {
+                        bindings.removeMember(key);
+                    } catch (UnsupportedOperationException ex) {
+                        // Variables declared with 'var' are not deletable from the global scope
+                        clear(key);
+                    }
+                }
+            }
+        }
+
+        // Restore the variables the script may have assigned
+        for (Map.Entry<String, Object> variable : variables.entrySet()) {
+            bindings.putMember(variable.getKey(), variable.getValue());
+        }
+    }
+
+    @Override
+    public void recreate() {
+        initGlobalScope();
+    }
+
+    @Override
+    public void cancel() {
+        context.close(true);
+    }
+
+    @Override
+    public boolean isCancellable() {
+        return true;
+    }
+
+    @Override
+    public void dispose() {
+        try {
+            context.close(true);
+        } catch (IllegalStateException ex) {
+            // Already closed
+        }
+    }
+
+    private void clear(String key) {
+        try {
+            bindings.putMember(key, null);
+        } catch (UnsupportedOperationException ex) {
+            // Read-only global
+        }
+    }
+
+    private void initGlobalScope() {
+        if (context != null) {
+            dispose();
+        }
+
+        context = engine.newContext();
+        bindings = context.getBindings(GraalJsEngine.LANGUAGE);
+        for (Map.Entry<String, Object> variable : variables.entrySet()) {
+            bindings.putMember(variable.getKey(), variable.getValue());
+        }
+    }
+
+    private static Object toJava(Value value) {
+        if (value.isHostObject()) {
+            return value.asHostObject();
+        } else if (value.hasMembers() && value.canInvokeMember("then")) {
+            return toFuture(value);
+        }
+        return value.as(Object.class);
+    }
+
+    /**
+     * Converts a promise, or any thenable, to a {@link CompletableFuture} completed with its value once it settles.
+     */
+    private static CompletableFuture<Object> toFuture(Value thenable) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        // Unlike proxies, host functional objects are not callable by the promise reactions
+        ProxyExecutable onFulfilled = value -> future.complete(value.length > 0 ? toJava(value[0]) : null);
+        ProxyExecutable onRejected = reason -> future.completeExceptionally(
+                new ScriptException(reason.length > 0 ? describe(reason[0]) : "Promise rejected"));
+        thenable.invokeMember("then", onFulfilled, onRejected);
+        return future;
+    }
+
+    private static String describe(Value reason) {
+        if (reason.hasMember("message")) {
+            Value name = reason.getMember("name");
+            return (name != null && name.isString() ? name.asString() : "Error") + ": "
+                    + reason.getMember("message").toString();
+        }
+        return reason.toString();
+    }
+
+    static ScriptException toScriptException(PolyglotException ex) {
+        SourceSection location = ex.getSourceLocation();
+        ScriptException scriptException = location != null
+                ? new ScriptException(ex.getMessage(), location.getSource().getName(), location.getStartLine(),
+                        location.getStartColumn())
+                : new ScriptException(ex.getMessage());
+        scriptException.initCause(ex);
+        return scriptException;
+    }
+}
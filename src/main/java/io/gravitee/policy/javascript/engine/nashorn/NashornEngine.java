@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.engine.nashorn;
+
+import io.gravitee.policy.javascript.engine.JavaScriptEngine;
+import io.gravitee.policy.javascript.engine.Script;
+import io.gravitee.policy.javascript.engine.ScriptScope;
+
+import javax.script.Compilable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import java.lang.reflect.Method;
+
+/**
+ * Nashorn engine, looked up through the <code>javax.script</code> API: built in the JDK up to Java 14, or provided by
+ * the standalone <code>org.openjdk.nashorn:nashorn-core</code> library afterwards.
+ *
+ * Nashorn can persist the classes it generates, so that the scripts are loaded rather than compiled again by the next
+ * runs. It only reads the directory of this code cache from the JVM-wide <code>nashorn.persistent.code.cache</code>
+ * system property, which the policy leaves to the gateway: the code cache is enabled when the property is set.
+ *
+ * @author gr1d.io team
+ */
+public final class NashornEngine implements JavaScriptEngine {
+
+    private static final String SCRIPT_ENGINE_NAME = "nashorn";
+
+    // Read by Nashorn when an engine is created with the --persistent-code-cache option
+    private static final String CODE_CACHE_PROPERTY = "nashorn.persistent.code.cache";
+
+    private final ScriptEngine engine;
+
+    public NashornEngine() {
+        ScriptEngine engine = new ScriptEngineManager().getEngineByName(SCRIPT_ENGINE_NAME);
+        if (engine == null) {
+            throw new IllegalStateException("Nashorn is not available on this JVM");
+        }
+        this.engine = System.getProperty(CODE_CACHE_PROPERTY) != null ? withCodeCache(engine) : engine;
+    }
+
+    /**
+     * Creates a new engine persisting its generated classes, or returns the given one if the factory does not support
+     * engine options.
+     */
+    private static ScriptEngine withCodeCache(ScriptEngine engine) {
+        final ScriptEngineFactory factory = engine.getFactory();
+        try {
+            // getScriptEngine(String...) is declared by both the JDK and the standalone Nashorn factories
+            Method getScriptEngine = factory.getClass().getMethod("getScriptEngine", String[].class);
+            return (ScriptEngine) getScriptEngine.invoke(factory, (Object) new String[]{"--persistent-code-cache"});
+        } catch (ReflectiveOperationException ex) {
+            return engine;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return SCRIPT_ENGINE_NAME;
+    }
+
+    @Override
+    public String getVersion() {
+        return engine.getFactory().getEngineVersion();
+    }
+
+    @Override
+    public Script compile(String source) throws ScriptException {
+        return new NashornScript(((Compilable) engine).compile(source));
+    }
+
+    @Override
+    public ScriptScope createScope() {
+        return new NashornScope(engine);
+    }
+
+    @Override
+    public void dispose() {
+        // Nothing to release: scopes are garbage collected
+    }
+}
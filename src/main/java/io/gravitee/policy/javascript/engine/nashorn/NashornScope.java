@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.engine.nashorn;
+
+import io.gravitee.policy.javascript.engine.Script;
+import io.gravitee.policy.javascript.engine.ScriptScope;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A Nashorn global scope: each set of engine bindings is backed by its own Nashorn global.
+ *
+ * Nashorn scripts can not be cancelled, see {@link io.gravitee.policy.javascript.execution.ScriptWatchdog}.
+ *
+ * @author gr1d.io team
+ */
+final class NashornScope implements ScriptScope {
+
+    // ScriptObjectMirror.getOwnKeys(false) lists the own enumerable keys of a global, while Bindings.size() and
+    // Bindings.keySet() walk its whole prototype chain
+    private static final ClassValue<Method> OWN_KEYS = new ClassValue<Method>() {
+        @Override
+        protected Method computeValue(Class<?> type) {
+            try {
+                return type.getMethod("getOwnKeys", boolean.class);
+            } catch (NoSuchMethodException ex) {
+                return null;
+            }
+        }
+    };
+
+    private final ScriptEngine engine;
+    private final SimpleScriptContext context = new SimpleScriptContext();
+    private Set<String> initialKeys;
+
+    // Keys of the global after the last clean, variables declared with 'var' included
+    private String[] cleanKeys;
+    private final Map<String, Object> variables = new HashMap<>();
+
+    NashornScope(ScriptEngine engine) {
+        this.engine = engine;
+        this.initGlobalScope();
+    }
+
+    @Override
+    public void bind(String name, Object value) {
+        variables.put(name, value);
+        initialKeys.add(name);
+        getBindings().put(name, value);
+        cleanKeys = null;
+    }
+
+    @Override
+    public Object execute(Script script) throws ScriptException {
+        return ((NashornScript) script).getCompiledScript().eval(context);
+    }
+
+    @Override
+    public void clean() {
+        Bindings bindings = getBindings();
+
+        // Fast path: the script did not define any global since the last clean
+        String[] keys = ownKeys(bindings);
+        if (!Arrays.equals(keys, cleanKeys)) {
+            for (String key : keys) {
+                if (!initialKeys.contains(key)) {
+                    bindings.remove(key);
+                    // Variables declared with 'var' are not deletable from the global scope
+                    if (bindings.containsKey(key)) {
+                        bindings.put(key, null);
+                    }
+                }
+            }
+            cleanKeys = null;
+        }
+
+        // Restore the variables the script may have assigned
+        for (Map.Entry<String, Object> variable : variables.entrySet()) {
+            if (bindings.get(variable.getKey()) != variable.getValue()) {
+                bindings.put(variable.getKey(), variable.getValue());
+                cleanKeys = null;
+            }
+        }
+
+        if (cleanKeys == null) {
+            cleanKeys = ownKeys(bindings);
+        }
+    }
+
+    @Override
+    public void recreate() {
+        initGlobalScope();
+    }
+
+    @Override
+    public void cancel() {
+        // Not supported by Nashorn
+    }
+
+    @Override
+    public boolean isCancellable() {
+        return false;
+    }
+
+    @Override
+    public void dispose() {
+        // Nothing to release: the global is garbage collected
+    }
+
+    private Bindings getBindings() {
+        return context.getBindings(ScriptContext.ENGINE_SCOPE);
+    }
+
+    private void initGlobalScope() {
+        Bindings bindings = engine.createBindings();
+        bindings.putAll(variables);
+        context.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+        initialKeys = new HashSet<>(bindings.keySet());
+        cleanKeys = null;
+    }
+
+    private static String[] ownKeys(Bindings bindings) {
+        Method method = OWN_KEYS.get(bindings.getClass());
+        if (method != null) {
+            try {
+                return (String[]) method.invoke(bindings, false);
+            } catch (ReflectiveOperationException ex) {
+                // Fall back to the key set
+            }
+        }
+        return bindings.keySet().toArray(new String[0]);
+    }
+}
@@ -0,0 +1,281 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.execution;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tracks an asynchronous script execution, which completes once the script calls <code>done()</code> or once the
+ * promise it returned settles, rather than when its evaluation returns.
+ *
+ * The evaluation and the timer callbacks registered by the script are run one at a time through
+ * {@link #execute(Callable)}, as a script context must not be used by several threads at once. Timers are fired by the
+ * scheduler, but their callbacks are run by an {@link Executor} so that a runaway callback does not delay the timers
+ * and the timeouts of the other executions. The {@link Listener} is
+ * called exactly once: when the execution completes, fails or exceeds its timeout, and never while a callback is still
+ * running unless the callback has been abandoned, in which case the script context must not be reused.
+ *
+ * @author gr1d.io team
+ */
+public final class AsyncExecution {
+
+    /**
+     * Bound to the <code>done</code> variable. Arguments are ignored: as for synchronous scripts, the outcome of the
+     * execution is read from the <code>result</code> variable.
+     */
+    @FunctionalInterface
+    public interface Done {
+        void done(Object... ignored);
+    }
+
+    /**
+     * Bound to the <code>setTimeout</code> variable, returns the identifier of the timer.
+     */
+    @FunctionalInterface
+    public interface SetTimeout {
+        Object setTimeout(Runnable callback, Object... delay);
+    }
+
+    /**
+     * Bound to the <code>clearTimeout</code> variable.
+     */
+    @FunctionalInterface
+    public interface ClearTimeout {
+        void clearTimeout(Object... id);
+    }
+
+    /**
+     * Runs a part of the script, ie. under the time budget of the {@link ScriptWatchdog}.
+     */
+    @FunctionalInterface
+    public interface Guard {
+        Object run(Callable<Object> task) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * Called once the execution is over, with the error it failed with or <code>null</code>. An abandoned
+         * execution may still be running a callback.
+         */
+        void completed(Throwable error, boolean abandoned);
+    }
+
+    private final ScheduledExecutorService scheduler;
+    private final Executor callbacks;
+    private final Guard guard;
+    private final Runnable onAbort;
+    private final Listener listener;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Integer, ScheduledFuture<?>> timers = new HashMap<>();
+
+    // Guarded by this
+    private ScheduledFuture<?> timeout;
+    private int lastTimer;
+    private boolean running;
+    private boolean finished;
+    private boolean notified;
+    private boolean abandoned;
+    private Throwable error;
+
+    private final Done done = ignored -> complete(null);
+    private final SetTimeout setTimeout = this::schedule;
+    private final ClearTimeout clearTimeout = this::unschedule;
+
+    /**
+     * @param timeout the time, in milliseconds, after which the execution fails with a {@link ScriptTimeoutException},
+     *                or <code>0</code> for no limit.
+     * @param onAbort called when the execution times out while a callback is running, ie. to cancel the script.
+     */
+    public AsyncExecution(ScheduledExecutorService scheduler, Executor callbacks, long timeout, Guard guard,
+                          Runnable onAbort, Listener listener) {
+        this.scheduler = scheduler;
+        this.callbacks = callbacks;
+        this.guard = guard;
+        this.onAbort = onAbort;
+        this.listener = listener;
+        if (timeout > 0) {
+            synchronized (this) {
+                this.timeout = scheduler.schedule(() -> expire(timeout), timeout, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    public Done getDone() {
+        return done;
+    }
+
+    public SetTimeout getSetTimeout() {
+        return setTimeout;
+    }
+
+    public ClearTimeout getClearTimeout() {
+        return clearTimeout;
+    }
+
+    /**
+     * Runs a part of the script through the {@link Guard}, unless the execution is already over, in which case
+     * <code>null</code> is returned.
+     */
+    public Object execute(Callable<Object> task) throws Exception {
+        return execute(0, task);
+    }
+
+    /**
+     * Runs the callback of the given timer, unless it has been cleared in the meantime.
+     */
+    private Object execute(int timer, Callable<Object> task) throws Exception {
+        lock.lock();
+        try {
+            synchronized (this) {
+                if (finished || (timer > 0 && timers.remove(timer) == null)) {
+                    return null;
+                }
+                running = true;
+            }
+            return guard.run(task);
+        } catch (ScriptTimeoutException ex) {
+            synchronized (this) {
+                // The watchdog abandoned the callback, which may still be running
+                abandoned = true;
+            }
+            throw ex;
+        } finally {
+            boolean notify;
+            synchronized (this) {
+                running = false;
+                notify = finished && !notified;
+                notified |= notify;
+            }
+            lock.unlock();
+            if (notify) {
+                notifyListener();
+            }
+        }
+    }
+
+    /**
+     * Completes the execution once the given stage completes, ie. the promise returned by the script.
+     */
+    public void completeWith(CompletionStage<?> stage) {
+        stage.whenComplete((value, ex) -> complete(ex));
+    }
+
+    /**
+     * Completes the execution, successfully when <code>error</code> is <code>null</code>. Subsequent calls are
+     * ignored.
+     */
+    public void complete(Throwable error) {
+        boolean notify;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finish(error);
+            // Otherwise, the listener is notified once the running callback returns
+            notify = !running;
+            notified |= notify;
+        }
+        if (notify) {
+            notifyListener();
+        }
+    }
+
+    private void expire(long budget) {
+        boolean abort;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finish(new ScriptTimeoutException(budget));
+            abort = running;
+            abandoned |= running;
+            notified = true;
+        }
+        if (abort) {
+            try {
+                onAbort.run();
+            } catch (RuntimeException ex) {
+                // The callback keeps running until it completes
+            }
+        }
+        notifyListener();
+    }
+
+    private void finish(Throwable error) {
+        this.finished = true;
+        this.error = error;
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+        for (ScheduledFuture<?> timer : timers.values()) {
+            timer.cancel(false);
+        }
+        timers.clear();
+    }
+
+    private void notifyListener() {
+        Throwable error;
+        boolean abandoned;
+        synchronized (this) {
+            error = this.error;
+            abandoned = this.abandoned;
+        }
+        listener.completed(error, abandoned);
+    }
+
+    private synchronized Object schedule(Runnable callback, Object... delay) {
+        if (finished) {
+            return null;
+        }
+
+        final int id = ++lastTimer;
+        long millis = delay.length > 0 && delay[0] instanceof Number ? ((Number) delay[0]).longValue() : 0L;
+        timers.put(id, scheduler.schedule(() -> callbacks.execute(() -> fire(id, callback)), Math.max(millis, 0L),
+                TimeUnit.MILLISECONDS));
+        return id;
+    }
+
+    private synchronized void unschedule(Object... id) {
+        if (id.length > 0 && id[0] instanceof Number) {
+            ScheduledFuture<?> timer = timers.remove(((Number) id[0]).intValue());
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+    }
+
+    private void fire(int id, Runnable callback) {
+        try {
+            execute(id, () -> {
+                callback.run();
+                return null;
+            });
+        } catch (Throwable t) {
+            complete(t);
+        }
+    }
+}
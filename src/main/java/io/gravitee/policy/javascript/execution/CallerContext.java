@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.execution;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks back on the Vert.x context of the thread handling a request.
+ *
+ * The gateway handles each request on a Vert.x event loop, and neither the policy chain nor the streams of a request
+ * are thread-safe: once a script has run on another thread (a worker, a timer or an asynchronous callback), the chain
+ * has to be resumed on the context of the request. The policy is built against the gateway API only, so Vert.x is
+ * accessed by reflection; when it is not available, or when the calling thread has no Vert.x context, the tasks are
+ * run by a fallback executor instead.
+ *
+ * @author gr1d.io team
+ */
+public final class CallerContext implements Executor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CallerContext.class);
+
+    private static final Method CURRENT_CONTEXT;
+    private static final Method RUN_ON_CONTEXT;
+    private static final Class<?> HANDLER;
+
+    static {
+        Method currentContext = null;
+        Method runOnContext = null;
+        Class<?> handler = null;
+        try {
+            ClassLoader classLoader = CallerContext.class.getClassLoader();
+            Class<?> vertx = Class.forName("io.vertx.core.Vertx", false, classLoader);
+            Class<?> context = Class.forName("io.vertx.core.Context", false, classLoader);
+            handler = Class.forName("io.vertx.core.Handler", false, classLoader);
+            currentContext = vertx.getMethod("currentContext");
+            runOnContext = context.getMethod("runOnContext", handler);
+        } catch (ClassNotFoundException | NoSuchMethodException ex) {
+            LOGGER.debug("Vert.x is not available, the policy chain is resumed by the thread running the script");
+        }
+        CURRENT_CONTEXT = currentContext;
+        RUN_ON_CONTEXT = runOnContext;
+        HANDLER = handler;
+    }
+
+    private final Object context;
+
+    private CallerContext(Object context) {
+        this.context = context;
+    }
+
+    /**
+     * Returns an executor running tasks on the Vert.x context of the calling thread, or the given fallback executor
+     * when the calling thread has none.
+     */
+    public static Executor capture(Executor fallback) {
+        if (CURRENT_CONTEXT != null) {
+            try {
+                Object context = CURRENT_CONTEXT.invoke(null);
+                if (context != null) {
+                    return new CallerContext(context);
+                }
+            } catch (ReflectiveOperationException ex) {
+                LOGGER.warn("Unable to get the Vert.x context of the calling thread", ex);
+            }
+        }
+        return fallback;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Object handler = Proxy.newProxyInstance(HANDLER.getClassLoader(), new Class<?>[] { HANDLER },
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return method.invoke(task, args);
+                    }
+                    task.run();
+                    return null;
+                });
+
+        try {
+            RUN_ON_CONTEXT.invoke(context, handler);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Unable to run a task on the Vert.x context of the request", ex);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.execution;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of worker threads running scripts off the threads handling the requests.
+ *
+ * At most {@code maxThreads} scripts run concurrently, and up to {@code queueSize} more wait for a worker. Once the
+ * queue is full, executions are rejected rather than queued, so that a slow script does not pile up requests. Each
+ * execution is also accounted to a key (ie. the API), whose pending executions may be limited so that one API can not
+ * use up the whole queue.
+ *
+ * Tasks are run by worker threads: callers resume the processing of the request on its own thread, see
+ * {@link CallerContext}.
+ *
+ * @author gr1d.io team
+ */
+public final class ScriptExecutor implements ScriptExecutorMXBean {
+
+    private final ThreadPoolExecutor executor;
+    private final int queueSize;
+    private final ConcurrentMap<String, AtomicInteger> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public ScriptExecutor(int maxThreads, int queueSize) {
+        AtomicInteger threads = new AtomicInteger();
+        this.queueSize = queueSize;
+        this.executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "gravitee-javascript-worker-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs the given task on a worker thread, failing with a {@link RejectedExecutionException} when the workers are
+     * saturated, or when {@code key} already has {@code maxPending} executions running or waiting (no limit when not
+     * positive).
+     */
+    public void execute(String key, int maxPending, Runnable task) {
+        AtomicInteger keyPending = pending.computeIfAbsent(key, k -> new AtomicInteger());
+        if (keyPending.incrementAndGet() > maxPending && maxPending > 0) {
+            keyPending.decrementAndGet();
+            rejected.increment();
+            throw new RejectedExecutionException("Too many pending script executions for " + key);
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    keyPending.decrementAndGet();
+                    completed.increment();
+                }
+            });
+            submitted.increment();
+        } catch (RejectedExecutionException ex) {
+            keyPending.decrementAndGet();
+            rejected.increment();
+            throw ex;
+        }
+    }
+
+    @Override
+    public int getMaxThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    @Override
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    @Override
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    @Override
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    @Override
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
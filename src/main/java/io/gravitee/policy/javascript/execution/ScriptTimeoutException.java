@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.execution;
+
+/**
+ * Thrown when a script has been aborted because it exceeded its execution time budget.
+ *
+ * @author gr1d.io team
+ */
+public class ScriptTimeoutException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long budget;
+
+    public ScriptTimeoutException(long budget) {
+        super("Script execution exceeded its time budget of " + budget + " ms");
+        this.budget = budget;
+    }
+
+    /**
+     * Returns the time budget, in milliseconds.
+     */
+    public long getBudget() {
+        return budget;
+    }
+}
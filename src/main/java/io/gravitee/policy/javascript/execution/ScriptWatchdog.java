@@ -0,0 +1,274 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.execution;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Enforces an execution time budget on script evaluations.
+ *
+ * When the engine can cancel a running script (ie. GraalJS), evaluations are run by the calling thread, and cancelled
+ * by a timer once the budget is exceeded: the caller then fails with a {@link ScriptTimeoutException}.
+ *
+ * Nashorn neither checks for thread interruption nor offers an instruction budget, and stopping the thread running the
+ * script may crash the JVM. Its evaluations under a budget are thus run by a dedicated thread, while the caller waits
+ * up to the budget: once exceeded, the caller fails with a {@link ScriptTimeoutException}, and the evaluation thread
+ * is interrupted and abandoned. The budget stops the request, not the script: a runaway script keeps its thread busy
+ * until it completes, possibly forever. The number of evaluation threads is bounded by {@code maxThreads}, and once a
+ * script has {@code maxRunawaysPerScript} runaway evaluations, it is quarantined: its evaluations are rejected at
+ * once, without a thread, until one of them completes. Other scripts thus keep their evaluation threads.
+ *
+ * As an aborted script may still be running, its script context must not be reused.
+ *
+ * @author gr1d.io team
+ */
+public final class ScriptWatchdog implements ScriptWatchdogMXBean {
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor timer;
+    private final int maxRunawaysPerScript;
+
+    // Number of runaway evaluations of each script, by digest, only holding the scripts having some
+    private final ConcurrentMap<String, Integer> scriptRunaways = new ConcurrentHashMap<>();
+
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder aborted = new LongAdder();
+    private final LongAdder quarantined = new LongAdder();
+    private final AtomicInteger runaways = new AtomicInteger();
+
+    public ScriptWatchdog(int maxThreads, int maxRunawaysPerScript) {
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(0, maxThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "gravitee-javascript-eval-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "gravitee-javascript-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+        this.maxRunawaysPerScript = Math.max(1, maxRunawaysPerScript);
+    }
+
+    /**
+     * Runs the given task, an evaluation of the script of the given digest, aborting it if it runs for more than
+     * {@code budget} milliseconds. The task is run in the calling thread, without any limit, when {@code budget} is
+     * not positive.
+     *
+     * {@code cancel} is called once the budget is exceeded. When {@code cancellable}, it stops the task, which is then
+     * run by the calling thread.
+     *
+     * @throws RejectedExecutionException if all the evaluation threads are busy, or if the script is quarantined
+     */
+    public <T> T run(String script, long budget, Callable<T> task, Runnable cancel, boolean cancellable)
+            throws Exception {
+        if (budget <= 0) {
+            return task.call();
+        } else if (cancellable) {
+            return runCancellable(budget, task, cancel);
+        }
+
+        Integer scriptRunaways = this.scriptRunaways.get(script);
+        if (scriptRunaways != null && scriptRunaways >= maxRunawaysPerScript) {
+            quarantined.increment();
+            throw new RejectedExecutionException("The script " + script + " is quarantined: " + scriptRunaways
+                    + " of its evaluations are still running beyond their time budget");
+        }
+
+        Guard<T> guard = new Guard<>(script, task);
+        Future<T> future;
+        try {
+            future = executor.submit(guard);
+        } catch (RejectedExecutionException ex) {
+            throw new RejectedExecutionException("All the " + executor.getMaximumPoolSize()
+                    + " script evaluation threads are busy", ex);
+        }
+        evaluations.increment();
+
+        try {
+            return future.get(budget, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ex;
+        } catch (TimeoutException ex) {
+            guard.abort();
+            future.cancel(true);
+            try {
+                cancel.run();
+            } catch (RuntimeException cancelEx) {
+                // The script keeps running until it completes
+            }
+            throw new ScriptTimeoutException(budget);
+        }
+    }
+
+    private <T> T runCancellable(long budget, Callable<T> task, Runnable cancel) throws Exception {
+        Cancellation cancellation = new Cancellation(cancel);
+        ScheduledFuture<?> timeout = timer.schedule(cancellation, budget, TimeUnit.MILLISECONDS);
+        evaluations.increment();
+
+        T result;
+        try {
+            result = task.call();
+        } catch (Exception ex) {
+            if (cancellation.complete()) {
+                throw new ScriptTimeoutException(budget);
+            }
+            throw ex;
+        } finally {
+            timeout.cancel(false);
+        }
+
+        // The script may have been cancelled once done, its scope is then unusable all the same
+        if (cancellation.complete()) {
+            throw new ScriptTimeoutException(budget);
+        }
+        return result;
+    }
+
+    @Override
+    public int getMaxThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    @Override
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    @Override
+    public long getAborted() {
+        return aborted.sum();
+    }
+
+    @Override
+    public int getRunaways() {
+        return runaways.get();
+    }
+
+    @Override
+    public int getMaxRunawaysPerScript() {
+        return maxRunawaysPerScript;
+    }
+
+    @Override
+    public int getQuarantinedScripts() {
+        return (int) scriptRunaways.values().stream().filter(count -> count >= maxRunawaysPerScript).count();
+    }
+
+    @Override
+    public long getQuarantined() {
+        return quarantined.sum();
+    }
+
+    private final class Guard<T> implements Callable<T> {
+
+        private final String script;
+        private final Callable<T> task;
+        private boolean completed;
+        private boolean abandoned;
+
+        Guard(String script, Callable<T> task) {
+            this.script = script;
+            this.task = task;
+        }
+
+        @Override
+        public T call() throws Exception {
+            try {
+                return task.call();
+            } finally {
+                synchronized (this) {
+                    completed = true;
+                    if (abandoned) {
+                        runaways.decrementAndGet();
+                        scriptRunaways.computeIfPresent(script, (digest, count) -> count > 1 ? count - 1 : null);
+                    }
+                }
+            }
+        }
+
+        synchronized void abort() {
+            aborted.increment();
+            if (!completed) {
+                abandoned = true;
+                runaways.incrementAndGet();
+                scriptRunaways.merge(script, 1, Integer::sum);
+            }
+        }
+    }
+
+    private final class Cancellation implements Runnable {
+
+        private final Runnable cancel;
+        private boolean completed;
+        private boolean cancelled;
+
+        Cancellation(Runnable cancel) {
+            this.cancel = cancel;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (completed) {
+                    return;
+                }
+                cancelled = true;
+            }
+            aborted.increment();
+            try {
+                cancel.run();
+            } catch (RuntimeException ex) {
+                // Already closed
+            }
+        }
+
+        /**
+         * Marks the task as completed, returning <code>true</code> if it has been cancelled.
+         */
+        synchronized boolean complete() {
+            completed = true;
+            return cancelled;
+        }
+    }
+}
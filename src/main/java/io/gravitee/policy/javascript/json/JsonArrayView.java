@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.json;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * {@link List} view of a JSON array, so that scripts can read and update it as any array
+ * (ie. <code>request.json.items[0]</code>) while its elements are only converted when accessed.
+ * Updates are written through to the underlying JSON tree.
+ *
+ * @author gr1d.io team
+ */
+public final class JsonArrayView extends AbstractList<Object> implements JsonView, RandomAccess {
+
+    private final ArrayNode node;
+
+    JsonArrayView(ArrayNode node) {
+        this.node = node;
+    }
+
+    @Override
+    public ArrayNode getNode() {
+        return node;
+    }
+
+    @Override
+    public Object get(int index) {
+        return JsonViews.view(node.get(index));
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+        return JsonViews.view(node.set(index, JsonViews.toNode(element)));
+    }
+
+    @Override
+    public void add(int index, Object element) {
+        node.insert(index, JsonViews.toNode(element));
+        modCount++;
+    }
+
+    @Override
+    public Object remove(int index) {
+        modCount++;
+        return JsonViews.view(node.remove(index));
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        node.removeAll();
+    }
+
+    @Override
+    public int size() {
+        return node.size();
+    }
+
+    @Override
+    public String toString() {
+        return node.toString();
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link Map} view of a JSON object, so that scripts can read and update it as any object
+ * (ie. <code>request.json.name</code>) while its members are only converted when accessed.
+ * Updates are written through to the underlying JSON tree.
+ *
+ * @author gr1d.io team
+ */
+public final class JsonObjectView extends AbstractMap<String, Object> implements JsonView {
+
+    private final ObjectNode node;
+
+    JsonObjectView(ObjectNode node) {
+        this.node = node;
+    }
+
+    @Override
+    public ObjectNode getNode() {
+        return node;
+    }
+
+    @Override
+    public Object get(Object key) {
+        return key instanceof String ? JsonViews.view(node.get((String) key)) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && node.has((String) key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return JsonViews.view(node.set(key, JsonViews.toNode(value)));
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return key instanceof String ? JsonViews.view(node.remove((String) key)) : null;
+    }
+
+    @Override
+    public int size() {
+        return node.size();
+    }
+
+    @Override
+    public void clear() {
+        node.removeAll();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                Iterator<Entry<String, JsonNode>> fields = node.fields();
+                return new Iterator<Entry<String, Object>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return fields.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        Entry<String, JsonNode> field = fields.next();
+                        return new SimpleEntry<String, Object>(field.getKey(), JsonViews.view(field.getValue())) {
+                            @Override
+                            public Object setValue(Object value) {
+                                super.setValue(value);
+                                return JsonViews.view(field.setValue(JsonViews.toNode(value)));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void remove() {
+                        fields.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return node.size();
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return node.toString();
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.javascript.utils.Buffers;
+import io.gravitee.policy.javascript.utils.ScriptValues;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Converts JSON bodies from and to the views handed to scripts.
+ *
+ * @author gr1d.io team
+ */
+public final class JsonViews {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private JsonViews() {
+    }
+
+    /**
+     * Parses the given body, and returns a view of it: a {@link JsonObjectView}, a {@link JsonArrayView}, or the
+     * value of a JSON scalar. The body is read through a view of its native buffer, without copying it.
+     */
+    public static Object parse(Buffer buffer) throws IOException {
+        return view(MAPPER.readTree(new ByteBufferBackedInputStream(Buffers.view(buffer))));
+    }
+
+    /**
+     * Serializes the given value, either a view or any value returned by a script (ie. a map, a list or a script
+     * object), as JSON.
+     */
+    public static Buffer write(Object value) throws IOException {
+        return Buffer.buffer(MAPPER.writeValueAsBytes(toNode(value)));
+    }
+
+    /**
+     * Returns <code>true</code> if the given script result has to be serialized as JSON, rather than converted to a
+     * string.
+     */
+    public static boolean isJson(Object value) {
+        return value instanceof JsonView || value instanceof Map || value instanceof Collection;
+    }
+
+    static Object view(JsonNode node) {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            return null;
+        } else if (node.isObject()) {
+            return new JsonObjectView((ObjectNode) node);
+        } else if (node.isArray()) {
+            return new JsonArrayView((ArrayNode) node);
+        } else if (node.isTextual()) {
+            return node.textValue();
+        } else if (node.isBoolean()) {
+            return node.booleanValue();
+        } else if (node.isIntegralNumber() && node.canConvertToLong()) {
+            return node.canConvertToInt() ? (Object) node.intValue() : (Object) node.longValue();
+        } else if (node.isNumber()) {
+            return node.doubleValue();
+        }
+
+        return node.asText();
+    }
+
+    static JsonNode toNode(Object value) {
+        if (ScriptValues.isNullOrUndefined(value) || ScriptValues.isFunction(value)) {
+            return NODES.nullNode();
+        } else if (value instanceof JsonView) {
+            return ((JsonView) value).getNode();
+        } else if (value instanceof String || value instanceof Character) {
+            return NODES.textNode(value.toString());
+        } else if (value instanceof Boolean) {
+            return NODES.booleanNode((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return NODES.numberNode(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            return NODES.numberNode((Long) value);
+        } else if (value instanceof BigInteger) {
+            return NODES.numberNode((BigInteger) value);
+        } else if (value instanceof BigDecimal) {
+            return NODES.numberNode((BigDecimal) value);
+        } else if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            // Script numbers are doubles: keep integral values as such
+            if (number == Math.rint(number) && !Double.isInfinite(number) && Math.abs(number) < (1L << 53)) {
+                return NODES.numberNode((long) number);
+            }
+            return NODES.numberNode(number);
+        } else if (value instanceof Map && ScriptValues.isArray(value)) {
+            ArrayNode array = NODES.arrayNode();
+            for (Object element : ((Map<?, ?>) value).values()) {
+                array.add(toNode(element));
+            }
+            return array;
+        } else if (value instanceof Map) {
+            ObjectNode object = NODES.objectNode();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!ScriptValues.isUndefined(entry.getValue()) && !ScriptValues.isFunction(entry.getValue())) {
+                    object.set(String.valueOf(entry.getKey()), toNode(entry.getValue()));
+                }
+            }
+            return object;
+        } else if (value instanceof Collection) {
+            ArrayNode array = NODES.arrayNode();
+            for (Object element : (Collection<?>) value) {
+                array.add(toNode(element));
+            }
+            return array;
+        } else if (value instanceof Object[]) {
+            ArrayNode array = NODES.arrayNode();
+            for (Object element : (Object[]) value) {
+                array.add(toNode(element));
+            }
+            return array;
+        }
+
+        return NODES.textNode(value.toString());
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.metrics;
+
+import io.gravitee.policy.javascript.Phase;
+import io.gravitee.policy.javascript.utils.JmxUtils;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution metrics of a script attached to a phase, identified by the digest of its source.
+ *
+ * Metrics are shared by all the policy instances running the same script in the same phase, and are exposed through
+ * JMX under <code>io.gravitee.policy.javascript:type=ScriptMetrics,phase=&lt;phase&gt;,script=&lt;digest&gt;</code>.
+ * Up to <code>gravitee.policy.javascript.metrics.maxScripts</code> scripts are tracked per phase: beyond that, the
+ * metrics of the least recently executed script are dropped and unregistered, so that scripts edited over time (or
+ * undeployed with their API) do not keep their metrics forever.
+ *
+ * @author gr1d.io team
+ */
+public final class ScriptMetrics implements ScriptMetricsMXBean {
+
+    private static final int MAX_SCRIPTS = Integer.getInteger("gravitee.policy.javascript.metrics.maxScripts", 1000);
+
+    private static final Map<Phase, ConcurrentMap<String, ScriptMetrics>> METRICS = new EnumMap<>(Phase.class);
+
+    static {
+        for (Phase phase : Phase.values()) {
+            METRICS.put(phase, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * The outcome of a script execution.
+     */
+    public enum Outcome {
+        /**
+         * The script ran and let the request continue.
+         */
+        SUCCESS,
+        /**
+         * The script ran and failed the request through <code>result.state = State.FAILURE</code>.
+         */
+        FAILURE,
+        /**
+         * The script could not be compiled, or threw an exception.
+         */
+        ERROR,
+        /**
+         * The script has been aborted because it exceeded its execution time budget.
+         */
+        TIMEOUT,
+        /**
+         * The script could not be run, as no script context or evaluation thread was available.
+         */
+        REJECTED
+    }
+
+    private final Phase phase;
+    private final String script;
+    private volatile long lastExecution = System.nanoTime();
+
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder compileTime = new LongAdder();
+    private final LongAdder executionTime = new LongAdder();
+    private final LongAccumulator maxExecutionTime = new LongAccumulator(Math::max, 0L);
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+
+    private ScriptMetrics(Phase phase, String script) {
+        this.phase = phase;
+        this.script = script;
+    }
+
+    /**
+     * Returns the metrics of the script with the given digest in the given phase, registering them on first use.
+     */
+    public static ScriptMetrics of(Phase phase, String digest) {
+        ConcurrentMap<String, ScriptMetrics> metricsByScript = METRICS.get(phase);
+        ScriptMetrics metrics = metricsByScript.get(digest);
+
+        if (metrics == null) {
+            metrics = new ScriptMetrics(phase, digest);
+            ScriptMetrics previous = metricsByScript.putIfAbsent(digest, metrics);
+            if (previous != null) {
+                metrics = previous;
+            } else {
+                JmxUtils.register(metrics, metrics.getObjectName());
+                if (metricsByScript.size() > MAX_SCRIPTS) {
+                    evict(metricsByScript, metrics);
+                }
+            }
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Drops the metrics of the least recently executed script of a phase, other than the given one.
+     */
+    private static void evict(ConcurrentMap<String, ScriptMetrics> metricsByScript, ScriptMetrics added) {
+        ScriptMetrics eldest = null;
+        for (ScriptMetrics metrics : metricsByScript.values()) {
+            if (metrics != added && (eldest == null || metrics.lastExecution - eldest.lastExecution < 0)) {
+                eldest = metrics;
+            }
+        }
+
+        if (eldest != null && metricsByScript.remove(eldest.script, eldest)) {
+            JmxUtils.unregister(eldest.getObjectName());
+        }
+    }
+
+    private String getObjectName() {
+        return "type=ScriptMetrics,phase=" + phase.getLabel() + ",script=" + script;
+    }
+
+    /**
+     * Records an execution of the script. Times are given in nanoseconds, and byte counts are ignored when negative.
+     */
+    public void record(Outcome outcome, long compileNanos, long executionNanos, long in, long out) {
+        lastExecution = System.nanoTime();
+
+        switch (outcome) {
+            case SUCCESS:
+                successes.increment();
+                break;
+            case FAILURE:
+                failures.increment();
+                break;
+            case TIMEOUT:
+                timeouts.increment();
+                break;
+            case REJECTED:
+                rejections.increment();
+                break;
+            default:
+                errors.increment();
+        }
+
+        compileTime.add(compileNanos);
+        executionTime.add(executionNanos);
+        maxExecutionTime.accumulate(executionNanos);
+
+        if (in > 0) {
+            bytesIn.add(in);
+        }
+        if (out > 0) {
+            bytesOut.add(out);
+        }
+    }
+
+    @Override
+    public String getPhase() {
+        return phase.getLabel();
+    }
+
+    @Override
+    public String getScript() {
+        return script;
+    }
+
+    @Override
+    public long getSuccesses() {
+        return successes.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    @Override
+    public long getTotalCompileTimeMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(compileTime.sum());
+    }
+
+    @Override
+    public long getTotalExecutionTimeMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(executionTime.sum());
+    }
+
+    @Override
+    public long getMaxExecutionTimeMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxExecutionTime.get());
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.metrics;
+
+/**
+ * Management interface exposing the {@link ScriptMetrics} of a script attached to a phase.
+ *
+ * @author gr1d.io team
+ */
+public interface ScriptMetricsMXBean {
+
+    String getPhase();
+
+    String getScript();
+
+    long getSuccesses();
+
+    long getFailures();
+
+    long getErrors();
+
+    long getTimeouts();
+
+    long getRejections();
+
+    long getTotalCompileTimeMicros();
+
+    long getTotalExecutionTimeMicros();
+
+    long getMaxExecutionTimeMicros();
+
+    long getBytesIn();
+
+    long getBytesOut();
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+
+import java.io.IOException;
+
+/**
+ * A record of a body split by the {@link io.gravitee.policy.javascript.configuration.ContentMode#RECORDS} mode, as
+ * handed to the scripts evaluated for a batch of records. As for the body of a request, the record is only decoded or
+ * parsed on first access.
+ *
+ * @author gr1d.io team
+ */
+public class BodyRecord {
+
+    private final LazyBody body;
+    private Object output;
+
+    public BodyRecord(Buffer buffer) {
+        this.body = new LazyBody(buffer);
+    }
+
+    /**
+     * Returns the record decoded as a string.
+     */
+    public String getContent() {
+        return body.getContent();
+    }
+
+    /**
+     * Returns the record as a byte array, without any charset decoding.
+     */
+    public byte[] getBytes() {
+        return body.getBytes();
+    }
+
+    public Buffer getBuffer() {
+        return body.getBuffer();
+    }
+
+    /**
+     * Returns the record parsed as JSON, see {@link ContentAwareRequest#getJson()}.
+     */
+    public Object getJson() throws IOException {
+        return body.getJson();
+    }
+
+    public int getContentLength() {
+        return body.getContentLength();
+    }
+
+    /**
+     * Returns the output of the record set by the script, when it does not return an array of outputs.
+     */
+    public Object getOutput() {
+        return output;
+    }
+
+    /**
+     * Sets the output of the record, with the same semantics as an element of the array returned by the script. Setting
+     * outputs is cheaper than building an array, which has to be converted once returned by the script.
+     */
+    public void setOutput(Object output) {
+        this.output = output;
+    }
+
+    /**
+     * Returns <code>true</code> if the given script result is the record itself, meaning that the script did not
+     * modify it.
+     */
+    public boolean isContent(Object value) {
+        return value == this || body.isContent(value);
+    }
+
+    @Override
+    public String toString() {
+        return getContent();
+    }
+}
@@ -23,8 +23,10 @@ import io.gravitee.gateway.api.Request;
 import io.gravitee.gateway.api.buffer.Buffer;
 import io.gravitee.gateway.api.handler.Handler;
 import io.gravitee.gateway.api.stream.ReadStream;
+import io.gravitee.policy.javascript.encoding.ContentCoding;
 import io.gravitee.reporter.api.http.Metrics;
 
+import java.io.IOException;
 import java.time.Instant;
 
 /**
@@ -35,20 +37,76 @@ import java.time.Instant;
  */
 public class ContentAwareRequest implements Request {
 
-    private final Request request;
-    private final String content;
+    private Request request;
+    private final LazyBody body;
 
-    public ContentAwareRequest(Request request, String content) {
+    private final SingleValueView header = new SingleValueView(false);
+    private final SingleValueView parameter = new SingleValueView(true);
+
+    public ContentAwareRequest(Request request, Buffer buffer) {
+        this.request = request;
+        this.body = new LazyBody(buffer);
+    }
+
+    /**
+     * Wraps another request, so that the same instance can be reused across script invocations.
+     */
+    public void reset(Request request, Buffer buffer) {
+        reset(request, buffer, null);
+    }
+
+    /**
+     * Wraps another request, whose body is encoded with the given coding (if not <code>null</code>): the body is only
+     * decoded once read.
+     */
+    public void reset(Request request, Buffer buffer, ContentCoding coding) {
         this.request = request;
-        this.content = content;
+        this.body.reset(buffer, coding);
     }
 
     public Request getRequest() {
         return request;
     }
 
+    /**
+     * Returns the body decoded as a string. The body is only decoded on first access.
+     */
     public String getContent() {
-        return content;
+        return body.getContent();
+    }
+
+    /**
+     * Returns the body as a byte array, without any charset decoding.
+     */
+    public byte[] getBytes() {
+        return body.getBytes();
+    }
+
+    /**
+     * Returns the body as received by the policy, without any copy (but decoded when encoded).
+     */
+    public Buffer getBuffer() {
+        return body.getBuffer();
+    }
+
+    /**
+     * Returns the body parsed as JSON: objects and arrays are returned as views, whose members are only converted
+     * when accessed, and whose updates are written through. The body is only parsed on first access.
+     */
+    public Object getJson() throws IOException {
+        return body.getJson();
+    }
+
+    public int getContentLength() {
+        return body.getContentLength();
+    }
+
+    /**
+     * Returns <code>true</code> if the given script result is the body itself, as returned by {@link #getContent()},
+     * {@link #getBytes()} or {@link #getBuffer()}, meaning that the script did not modify it.
+     */
+    public boolean isContent(Object value) {
+        return body.isContent(value);
     }
 
     @Override
@@ -114,6 +172,13 @@ public class ContentAwareRequest implements Request {
         return this.parameters();
     }
 
+    /**
+     * Returns a single-value view of the query parameters, cheaper to use from scripts than {@link #getParameters()}.
+     */
+    public SingleValueView getParameter() {
+        return parameter.wrap(this.parameters());
+    }
+
     @Override
     public HttpHeaders headers() {
         return request.headers();
@@ -123,6 +188,13 @@ public class ContentAwareRequest implements Request {
         return this.headers();
     }
 
+    /**
+     * Returns a single-value view of the headers, cheaper to use from scripts than {@link #getHeaders()}.
+     */
+    public SingleValueView getHeader() {
+        return header.wrap(this.headers());
+    }
+
     @Override
     public HttpMethod method() {
         return request.method();
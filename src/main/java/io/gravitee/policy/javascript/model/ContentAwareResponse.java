@@ -19,6 +19,9 @@ import io.gravitee.common.http.HttpHeaders;
 import io.gravitee.gateway.api.Response;
 import io.gravitee.gateway.api.buffer.Buffer;
 import io.gravitee.gateway.api.stream.WriteStream;
+import io.gravitee.policy.javascript.encoding.ContentCoding;
+
+import java.io.IOException;
 
 /**
  * @author David BRASSELY (david.brassely at graviteesource.com)
@@ -28,12 +31,30 @@ import io.gravitee.gateway.api.stream.WriteStream;
  */
 public class ContentAwareResponse implements Response {
 
-    private final Response response;
-    private final String content;
+    private Response response;
+    private final LazyBody body;
+
+    private final SingleValueView header = new SingleValueView(false);
+
+    public ContentAwareResponse(Response response, Buffer buffer) {
+        this.response = response;
+        this.body = new LazyBody(buffer);
+    }
+
+    /**
+     * Wraps another response, so that the same instance can be reused across script invocations.
+     */
+    public void reset(Response response, Buffer buffer) {
+        reset(response, buffer, null);
+    }
 
-    public ContentAwareResponse(Response response, String content) {
+    /**
+     * Wraps another response, whose body is encoded with the given coding (if not <code>null</code>): the body is only
+     * decoded once read.
+     */
+    public void reset(Response response, Buffer buffer, ContentCoding coding) {
         this.response = response;
-        this.content = content;
+        this.body.reset(buffer, coding);
     }
 
     @Override
@@ -59,6 +80,13 @@ public class ContentAwareResponse implements Response {
         return this.headers();
     }
 
+    /**
+     * Returns a single-value view of the headers, cheaper to use from scripts than {@link #getHeaders()}.
+     */
+    public SingleValueView getHeader() {
+        return header.wrap(this.headers());
+    }
+
     @Override
     public WriteStream<Buffer> write(Buffer content) {
         return response.write(content);
@@ -69,7 +97,44 @@ public class ContentAwareResponse implements Response {
         response.end();
     }
 
+    /**
+     * Returns the body decoded as a string. The body is only decoded on first access.
+     */
     public String getContent() {
-        return content;
+        return body.getContent();
+    }
+
+    /**
+     * Returns the body as a byte array, without any charset decoding.
+     */
+    public byte[] getBytes() {
+        return body.getBytes();
+    }
+
+    /**
+     * Returns the body as received by the policy, without any copy (but decoded when encoded).
+     */
+    public Buffer getBuffer() {
+        return body.getBuffer();
+    }
+
+    /**
+     * Returns the body parsed as JSON: objects and arrays are returned as views, whose members are only converted
+     * when accessed, and whose updates are written through. The body is only parsed on first access.
+     */
+    public Object getJson() throws IOException {
+        return body.getJson();
+    }
+
+    public int getContentLength() {
+        return body.getContentLength();
+    }
+
+    /**
+     * Returns <code>true</code> if the given script result is the body itself, as returned by {@link #getContent()},
+     * {@link #getBytes()} or {@link #getBuffer()}, meaning that the script did not modify it.
+     */
+    public boolean isContent(Object value) {
+        return body.isContent(value);
     }
 }
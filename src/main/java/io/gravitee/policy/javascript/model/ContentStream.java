@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Callbacks registered by a content script running in streaming mode.
+ *
+ * The value returned by a callback is written downstream: a {@link Buffer} or a byte array is written as is, any
+ * other value is written as its string representation, and <code>null</code> or <code>undefined</code> writes
+ * nothing.
+ *
+ * @author gr1d.io team
+ */
+public class ContentStream {
+
+    private Function<Buffer, Object> chunkHandler;
+    private Supplier<Object> endHandler;
+
+    /**
+     * Registers the function called with each chunk of the body.
+     */
+    public ContentStream onChunk(Function<Buffer, Object> chunkHandler) {
+        this.chunkHandler = chunkHandler;
+        return this;
+    }
+
+    /**
+     * Registers the function called once the whole body has been read.
+     */
+    public ContentStream onEnd(Supplier<Object> endHandler) {
+        this.endHandler = endHandler;
+        return this;
+    }
+
+    public Object chunk(Buffer chunk) {
+        return (chunkHandler != null) ? chunkHandler.apply(chunk) : chunk;
+    }
+
+    public Object end() {
+        return (endHandler != null) ? endHandler.get() : null;
+    }
+}
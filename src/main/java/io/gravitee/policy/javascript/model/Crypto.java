@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.javascript.utils.Digests;
+import io.gravitee.policy.javascript.utils.ScriptValues;
+
+/**
+ * Hashing functions exposed to the scripts as <code>crypto</code>, ie. <code>crypto.sha256(request.content)</code>,
+ * so that scripts do not hash in JavaScript.
+ *
+ * A {@link Buffer} or a byte array is hashed as is, a string is hashed as UTF-8 and any other value as its string
+ * representation. The digest of <code>null</code> or <code>undefined</code> is <code>null</code>.
+ *
+ * @author gr1d.io team
+ */
+public final class Crypto {
+
+    public static final Crypto INSTANCE = new Crypto();
+
+    private Crypto() {
+    }
+
+    /**
+     * Returns the hex encoded SHA-1 digest of the given value.
+     */
+    public String sha1(Object value) {
+        if (ScriptValues.isNullOrUndefined(value)) {
+            return null;
+        } else if (value instanceof Buffer) {
+            return Digests.sha1((Buffer) value);
+        } else if (value instanceof byte[]) {
+            return Digests.sha1((byte[]) value);
+        }
+        return Digests.sha1(value.toString());
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 digest of the given value.
+     */
+    public String sha256(Object value) {
+        if (ScriptValues.isNullOrUndefined(value)) {
+            return null;
+        } else if (value instanceof Buffer) {
+            return Digests.sha256((Buffer) value);
+        } else if (value instanceof byte[]) {
+            return Digests.sha256((byte[]) value);
+        }
+        return Digests.sha256(value.toString());
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.javascript.encoding.ContentCoding;
+import io.gravitee.policy.javascript.encoding.ContentDecoder;
+import io.gravitee.policy.javascript.json.JsonViews;
+
+import java.io.IOException;
+
+/**
+ * The body handed to a script, shared by the request, the response and the records: it is only decoded (when encoded
+ * with a {@link ContentCoding}), converted to a string or a byte array, or parsed as JSON once read by the script.
+ *
+ * @author gr1d.io team
+ */
+final class LazyBody {
+
+    private Buffer buffer;
+    private ContentCoding coding;
+    private Buffer decoded;
+    private String content;
+    private byte[] bytes;
+    private Object json;
+
+    LazyBody(Buffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Holds another body, encoded with the given coding if not <code>null</code>.
+     */
+    void reset(Buffer buffer, ContentCoding coding) {
+        this.buffer = buffer;
+        this.coding = coding;
+        this.decoded = null;
+        this.content = null;
+        this.bytes = null;
+        this.json = null;
+    }
+
+    /**
+     * Returns the body decoded as a string. The body is only decoded on first access.
+     */
+    String getContent() {
+        if (content == null && buffer != null) {
+            content = body().toString();
+        }
+        return content;
+    }
+
+    /**
+     * Returns the body as a byte array, without any charset decoding.
+     */
+    byte[] getBytes() {
+        if (bytes == null && buffer != null) {
+            bytes = body().getBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the body as received by the policy, without any copy (but decoded when encoded).
+     */
+    Buffer getBuffer() {
+        return body();
+    }
+
+    /**
+     * Returns the body parsed as JSON: objects and arrays are returned as views, whose members are only converted
+     * when accessed, and whose updates are written through. The body is only parsed on first access.
+     */
+    Object getJson() throws IOException {
+        if (json == null && buffer != null && buffer.length() > 0) {
+            json = JsonViews.parse(body());
+        }
+        return json;
+    }
+
+    int getContentLength() {
+        return (buffer != null) ? body().length() : 0;
+    }
+
+    /**
+     * Returns <code>true</code> if the given script result is the body itself, as returned by {@link #getContent()},
+     * {@link #getBytes()} or {@link #getBuffer()}, meaning that the script did not modify it.
+     */
+    boolean isContent(Object value) {
+        return value != null && (value == buffer || value == decoded || value == content || value == bytes);
+    }
+
+    private Buffer body() {
+        if (coding == null || buffer == null) {
+            return buffer;
+        } else if (decoded == null) {
+            try {
+                ContentDecoder decoder = coding.newDecoder();
+                try {
+                    decoded = decoder.decode(buffer);
+                    decoder.finish();
+                } finally {
+                    decoder.end();
+                }
+            } catch (IOException ex) {
+                throw new IllegalStateException("Unable to decode the body: " + ex.getMessage(), ex);
+            }
+        }
+        return decoded;
+    }
+}
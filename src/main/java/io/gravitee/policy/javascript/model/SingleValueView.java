@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.model;
+
+import io.gravitee.common.util.MultiValueMap;
+import io.gravitee.policy.javascript.utils.ScriptValues;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Single-value view of request or response headers, or of request parameters, exposed to the scripts as
+ * <code>request.header</code>, <code>response.header</code> and <code>request.parameter</code>:
+ *
+ * <pre>
+ * if (request.header.has('X-Internal')) {
+ *     request.header.remove('X-Internal');
+ * }
+ * request.header.set('X-Tenant', request.parameter.get('tenant'));
+ * </pre>
+ *
+ * Names are case-insensitive. Reads go to the underlying map without copying it, and updates are written through.
+ * Unlike the underlying map, whose methods are overloaded and return lists, each method has a single signature, so
+ * that script engines link calls to it cheaply.
+ *
+ * @author gr1d.io team
+ */
+public final class SingleValueView {
+
+    private MultiValueMap<String, String> values;
+
+    // Whether lookups fall back to a case-insensitive scan, for maps which are not already case-insensitive
+    private final boolean scan;
+
+    SingleValueView(boolean scan) {
+        this.scan = scan;
+    }
+
+    SingleValueView wrap(MultiValueMap<String, String> values) {
+        this.values = values;
+        return this;
+    }
+
+    /**
+     * Returns the first value of the given name, or <code>null</code>.
+     */
+    public String get(String name) {
+        List<String> list = values.get(key(name));
+        return (list == null || list.isEmpty()) ? null : list.get(0);
+    }
+
+    /**
+     * Returns all the values of the given name, as a read-only list.
+     */
+    public List<String> getAll(String name) {
+        List<String> list = values.get(key(name));
+        return (list == null) ? Collections.emptyList() : Collections.unmodifiableList(list);
+    }
+
+    public boolean has(String name) {
+        return values.containsKey(key(name));
+    }
+
+    /**
+     * Replaces the values of the given name. A <code>null</code> or <code>undefined</code> value removes it.
+     */
+    public SingleValueView set(String name, Object value) {
+        if (ScriptValues.isNullOrUndefined(value)) {
+            values.remove(key(name));
+        } else {
+            values.set(key(name), value.toString());
+        }
+        return this;
+    }
+
+    /**
+     * Adds a value to the given name. A <code>null</code> or <code>undefined</code> value is ignored.
+     */
+    public SingleValueView add(String name, Object value) {
+        if (!ScriptValues.isNullOrUndefined(value)) {
+            values.add(key(name), value.toString());
+        }
+        return this;
+    }
+
+    /**
+     * Removes the given name, and returns <code>true</code> if it was present.
+     */
+    public boolean remove(String name) {
+        return values.remove(key(name)) != null;
+    }
+
+    public Set<String> names() {
+        return Collections.unmodifiableSet(values.keySet());
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Returns the name under which the given name is stored, if it differs in case only.
+     */
+    private String key(String name) {
+        if (scan && name != null && !values.containsKey(name)) {
+            for (String key : values.keySet()) {
+                if (name.equalsIgnoreCase(key)) {
+                    return key;
+                }
+            }
+        }
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(entry.getKey()).append('=')
+                    .append(entry.getValue().size() == 1 ? entry.getValue().get(0) : entry.getValue());
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.modules;
+
+import io.gravitee.policy.javascript.context.PooledScriptContext;
+import io.gravitee.policy.javascript.engine.Script;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Loads the shared modules required by the scripts of a script context.
+ *
+ * A module is evaluated once in the global scope of the context, on first use, and its exports are then kept by the
+ * context and returned to the next requests, until the scope is recreated. Modules may require other modules, but not
+ * circularly.
+ *
+ * @author gr1d.io team
+ */
+public final class ModuleLoader implements Require {
+
+    private final PooledScriptContext scriptContext;
+    private final Function<String, Script> compiler;
+    private final Set<String> loading = new HashSet<>();
+
+    /**
+     * @param compiler returns the compiled module of the given name
+     */
+    public ModuleLoader(PooledScriptContext scriptContext, Function<String, Script> compiler) {
+        this.scriptContext = scriptContext;
+        this.compiler = compiler;
+    }
+
+    @Override
+    public Object require(String name) {
+        Object exports = scriptContext.getModule(name);
+        if (exports != null) {
+            return exports;
+        }
+
+        if (!loading.add(name)) {
+            throw new IllegalStateException("Circular dependency on module " + name);
+        }
+        try {
+            exports = scriptContext.execute(compiler.apply(name));
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IllegalStateException("Unable to load module " + name + ": " + ex.getMessage(), ex);
+        } finally {
+            loading.remove(name);
+        }
+
+        scriptContext.putModule(name, exports);
+        return exports;
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.modules;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * The shared modules of the gateway, read from a directory: the module <code>claims/jwt</code> is the
+ * <code>claims/jwt.js</code> file of the directory.
+ *
+ * The source of a module is read once, and wrapped so that its evaluation defines no global and returns its exports,
+ * deeply frozen. The wrapped sources are meant to be compiled once per engine, like the policy scripts.
+ *
+ * @author gr1d.io team
+ */
+public final class ScriptModules {
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_.-]+(/[A-Za-z0-9_.-]+)*");
+
+    private static final String PROLOGUE = "(function () {\n"
+            + "var module = { exports: {} };\n"
+            + "(function (module, exports) {\n";
+
+    private static final String EPILOGUE = "\n})(module, module.exports);\n"
+            + "return (function freeze(value) {\n"
+            + "    if (value !== null && (typeof value === 'object' || typeof value === 'function')\n"
+            + "            && !Object.isFrozen(value)) {\n"
+            + "        Object.freeze(value);\n"
+            + "        Object.keys(value).forEach(function (key) { freeze(value[key]); });\n"
+            + "    }\n"
+            + "    return value;\n"
+            + "})(module.exports);\n"
+            + "})()";
+
+    private final Path directory;
+    private final ConcurrentMap<String, String> sources = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory directory of the modules, or <code>null</code> when there is none
+     */
+    public ScriptModules(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the wrapped source of the given module, failing with an {@link IllegalArgumentException} when there is
+     * no such module.
+     */
+    public String source(String name) {
+        String source = sources.get(name);
+        if (source == null) {
+            source = sources.computeIfAbsent(name, this::load);
+        }
+        return source;
+    }
+
+    private String load(String name) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Unable to load module " + name + ": no module directory is defined");
+        } else if (name == null || !NAME.matcher(name).matches() || name.contains("..")) {
+            throw new IllegalArgumentException("Invalid module name: " + name);
+        }
+
+        final Path file = directory.resolve(name + ".js");
+        try {
+            return PROLOGUE + new String(Files.readAllBytes(file), StandardCharsets.UTF_8) + EPILOGUE;
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Unable to load module " + name + " from " + file, ex);
+        }
+    }
+}
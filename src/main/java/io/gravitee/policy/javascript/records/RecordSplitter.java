@@ -0,0 +1,227 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.records;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.javascript.configuration.RecordFormat;
+import io.gravitee.policy.javascript.utils.Buffers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Splits a body into records as its chunks arrive, only buffering the bytes of the record being read.
+ *
+ * Records are split at the byte level: the delimiters being ASCII characters, they can not be part of a multi-byte
+ * UTF-8 sequence. Chunks are scanned through a view of their native buffer (see {@link Buffers#view(Buffer)}), and the
+ * bytes of a record are copied once, unless the record spans several chunks.
+ *
+ * @author gr1d.io team
+ */
+public abstract class RecordSplitter {
+
+    @FunctionalInterface
+    public interface RecordHandler {
+        void record(Buffer record) throws Exception;
+    }
+
+    // Bytes of the record being read, received with the previous chunks
+    private byte[] pending = new byte[256];
+    private int pendingLength;
+
+    public static RecordSplitter of(RecordFormat format) {
+        return format == RecordFormat.JSON_ARRAY ? new JsonArraySplitter() : new LineSplitter();
+    }
+
+    /**
+     * Reads a chunk of the body, calling the handler with each record it completes.
+     */
+    public void write(Buffer chunk, RecordHandler handler) throws Exception {
+        ByteBuffer bytes = Buffers.view(chunk);
+        int start = scan(bytes, handler);
+        append(bytes, start, bytes.limit());
+    }
+
+    /**
+     * Reads the end of the body, calling the handler with the last record, if any.
+     */
+    public abstract void end(RecordHandler handler) throws Exception;
+
+    /**
+     * Scans a chunk, from its position to its limit, calls the handler with each completed record, and returns the
+     * index of the first byte not consumed, to be kept until the next chunk.
+     */
+    abstract int scan(ByteBuffer bytes, RecordHandler handler) throws Exception;
+
+    /**
+     * Emits the record made of the pending bytes followed by the given range of the chunk, trimmed of whitespaces.
+     * Nothing is emitted for a blank record.
+     */
+    void emit(ByteBuffer bytes, int start, int end, RecordHandler handler) throws Exception {
+        if (pendingLength == 0) {
+            // The record is within the chunk: it is copied from the chunk directly
+            while (start < end && isWhitespace(bytes.get(start))) {
+                start++;
+            }
+            while (end > start && isWhitespace(bytes.get(end - 1))) {
+                end--;
+            }
+            if (start < end) {
+                byte[] record = new byte[end - start];
+                copy(bytes, start, record, 0, record.length);
+                handler.record(Buffer.buffer(record));
+            }
+            return;
+        }
+
+        append(bytes, start, end);
+
+        int from = 0;
+        int to = pendingLength;
+        while (from < to && isWhitespace(pending[from])) {
+            from++;
+        }
+        while (to > from && isWhitespace(pending[to - 1])) {
+            to--;
+        }
+
+        pendingLength = 0;
+        if (from < to) {
+            handler.record(Buffer.buffer(Arrays.copyOfRange(pending, from, to)));
+        }
+    }
+
+    /**
+     * Drops the pending bytes.
+     */
+    void skip() {
+        pendingLength = 0;
+    }
+
+    private void append(ByteBuffer bytes, int start, int end) {
+        int length = end - start;
+        if (length > 0) {
+            if (pendingLength + length > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + length));
+            }
+            copy(bytes, start, pending, pendingLength, length);
+            pendingLength += length;
+        }
+    }
+
+    private static void copy(ByteBuffer bytes, int start, byte[] target, int offset, int length) {
+        ByteBuffer range = bytes.duplicate();
+        // Through java.nio.Buffer, as ByteBuffer only overrides position(int) since Java 9
+        ((java.nio.Buffer) range).position(start);
+        range.get(target, offset, length);
+    }
+
+    static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /**
+     * Splits the body on line feeds, ignoring blank lines.
+     */
+    private static final class LineSplitter extends RecordSplitter {
+
+        private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+        @Override
+        int scan(ByteBuffer bytes, RecordHandler handler) throws Exception {
+            int start = bytes.position();
+            for (int i = start; i < bytes.limit(); i++) {
+                if (bytes.get(i) == '\n') {
+                    emit(bytes, start, i, handler);
+                    start = i + 1;
+                }
+            }
+            return start;
+        }
+
+        @Override
+        public void end(RecordHandler handler) throws Exception {
+            emit(EMPTY, 0, 0, handler);
+        }
+    }
+
+    /**
+     * Splits a top-level JSON array into its elements, tracking the nesting depth and the strings so that the commas
+     * of nested values are not taken as separators. Elements are not validated: a malformed element is handed to the
+     * script as is.
+     */
+    private static final class JsonArraySplitter extends RecordSplitter {
+
+        // 0 before the opening bracket of the array, -1 after its closing bracket
+        private int depth;
+        private boolean inString;
+        private boolean escaped;
+
+        @Override
+        int scan(ByteBuffer bytes, RecordHandler handler) throws Exception {
+            int start = bytes.position();
+            for (int i = start; i < bytes.limit(); i++) {
+                byte b = bytes.get(i);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (b == '\\') {
+                        escaped = true;
+                    } else if (b == '"') {
+                        inString = false;
+                    }
+                } else if (depth <= 0) {
+                    if (isWhitespace(b)) {
+                        continue;
+                    }
+                    if (depth < 0 || b != '[') {
+                        throw new IOException("Unexpected character '" + (char) b + "', the body must be a JSON array");
+                    }
+                    depth = 1;
+                    start = i + 1;
+                } else if (b == '"') {
+                    inString = true;
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    if (--depth == 0) {
+                        emit(bytes, start, i, handler);
+                        depth = -1;
+                        start = i + 1;
+                    }
+                } else if (b == ',' && depth == 1) {
+                    emit(bytes, start, i, handler);
+                    start = i + 1;
+                }
+            }
+
+            if (depth <= 0) {
+                // Whitespaces around the array
+                skip();
+                return bytes.limit();
+            }
+            return start;
+        }
+
+        @Override
+        public void end(RecordHandler handler) throws Exception {
+            if (depth > 0) {
+                throw new IOException("Unexpected end of the body, the JSON array is not closed");
+            }
+        }
+    }
+}
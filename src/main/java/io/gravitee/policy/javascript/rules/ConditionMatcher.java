@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.rules;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.common.http.HttpMethod;
+import io.gravitee.policy.javascript.configuration.ScriptCondition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A {@link ScriptCondition} compiled into a matcher: its pattern is compiled and its methods are resolved once, and
+ * shared by the policies using an identical condition.
+ *
+ * An invalid condition (ie. a malformed path pattern or an unknown method) is logged once, and compiled into a
+ * matcher holding the error, which the policy fails the requests with.
+ *
+ * @author gr1d.io team
+ */
+public final class ConditionMatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConditionMatcher.class);
+
+    private static final int CACHE_MAX_SIZE = 1000;
+
+    private static final ConcurrentMap<String, ConditionMatcher> MATCHERS = new ConcurrentHashMap<>();
+
+    private final String pathPrefix;
+    private final Pattern pathPattern;
+    private final Set<HttpMethod> methods;
+    private final String header;
+    private final String contentType;
+    private final String error;
+
+    private ConditionMatcher(ScriptCondition condition) {
+        this.error = null;
+        this.pathPrefix = emptyToNull(condition.getPathPrefix());
+        this.pathPattern = condition.getPathPattern() == null || condition.getPathPattern().isEmpty() ? null
+                : Pattern.compile(condition.getPathPattern());
+        this.methods = methods(condition.getMethods());
+        this.header = emptyToNull(condition.getHeader());
+        this.contentType = condition.getContentType() == null || condition.getContentType().trim().isEmpty() ? null
+                : condition.getContentType().trim().toLowerCase(Locale.ROOT);
+    }
+
+    private ConditionMatcher(String error) {
+        this.error = error;
+        this.pathPrefix = null;
+        this.pathPattern = null;
+        this.methods = null;
+        this.header = null;
+        this.contentType = null;
+    }
+
+    /**
+     * Returns the matcher of the given condition, or <code>null</code> when there is no condition.
+     */
+    public static ConditionMatcher of(ScriptCondition condition) {
+        if (condition == null) {
+            return null;
+        }
+
+        final String key = condition.getPathPrefix() + '\n' + condition.getPathPattern() + '\n'
+                + condition.getMethods() + '\n' + condition.getHeader() + '\n' + condition.getContentType();
+        ConditionMatcher matcher = MATCHERS.get(key);
+        if (matcher == null) {
+            if (MATCHERS.size() >= CACHE_MAX_SIZE) {
+                MATCHERS.clear();
+            }
+            matcher = MATCHERS.computeIfAbsent(key, k -> compile(condition));
+        }
+        return matcher;
+    }
+
+    private static ConditionMatcher compile(ScriptCondition condition) {
+        try {
+            return new ConditionMatcher(condition);
+        } catch (PatternSyntaxException ex) {
+            return invalid("invalid path pattern " + ex.getPattern() + ": " + ex.getDescription());
+        } catch (IllegalArgumentException ex) {
+            return invalid("unknown HTTP method in " + condition.getMethods());
+        }
+    }
+
+    private static ConditionMatcher invalid(String error) {
+        LOGGER.error("Invalid javascript script condition, the requests it applies to are failed: {}", error);
+        return new ConditionMatcher(error);
+    }
+
+    /**
+     * Returns why the condition is invalid, or <code>null</code> when it is valid.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Returns whether the condition matches the given request path and method, and the given headers. An invalid
+     * condition matches every request.
+     */
+    public boolean matches(String path, HttpMethod method, HttpHeaders headers) {
+        if (pathPrefix != null && (path == null || !path.startsWith(pathPrefix))) {
+            return false;
+        } else if (pathPattern != null && (path == null || !pathPattern.matcher(path).matches())) {
+            return false;
+        } else if (methods != null && !methods.contains(method)) {
+            return false;
+        } else if (header != null && !headers.containsKey(header)) {
+            return false;
+        }
+        return contentType == null || contentType.equals(mediaType(headers.getFirst(HttpHeaders.CONTENT_TYPE)));
+    }
+
+    private static Set<HttpMethod> methods(List<String> names) {
+        if (names == null || names.isEmpty()) {
+            return null;
+        }
+
+        Set<HttpMethod> methods = EnumSet.noneOf(HttpMethod.class);
+        for (String name : names) {
+            methods.add(HttpMethod.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+        }
+        return methods;
+    }
+
+    private static String mediaType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int parameters = contentType.indexOf(';');
+        return (parameters >= 0 ? contentType.substring(0, parameters) : contentType).trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
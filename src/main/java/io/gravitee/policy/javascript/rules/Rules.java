@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.rules;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.policy.api.PolicyResult;
+import io.gravitee.policy.javascript.configuration.ConditionOperator;
+import io.gravitee.policy.javascript.configuration.Rule;
+import io.gravitee.policy.javascript.configuration.RuleCondition;
+
+import java.util.List;
+
+/**
+ * Runs the declarative rules of a policy, in plain Java.
+ *
+ * @author gr1d.io team
+ */
+public final class Rules {
+
+    private Rules() {
+    }
+
+    /**
+     * Applies the given rules to the given headers, in order, and returns the failure of the first rejecting rule, or
+     * <code>null</code> if no rule rejected the request. Rules missing the header they act on are ignored.
+     */
+    public static PolicyResult apply(List<Rule> rules, HttpHeaders headers) {
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            if (rule.getAction() == null || !matches(rule.getCondition(), headers)) {
+                continue;
+            }
+
+            switch (rule.getAction()) {
+                case SET_HEADER:
+                    if (rule.getHeader() != null && rule.getValue() != null) {
+                        headers.set(rule.getHeader(), rule.getValue());
+                    }
+                    break;
+                case ADD_HEADER:
+                    if (rule.getHeader() != null && rule.getValue() != null) {
+                        headers.add(rule.getHeader(), rule.getValue());
+                    }
+                    break;
+                case REMOVE_HEADER:
+                    if (rule.getHeader() != null) {
+                        headers.remove(rule.getHeader());
+                    }
+                    break;
+                case REJECT:
+                    return (rule.getContentType() != null)
+                            ? PolicyResult.failure(rule.getStatus(), rule.getError(), rule.getContentType())
+                            : PolicyResult.failure(rule.getStatus(), rule.getError());
+                default:
+                    break;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns <code>true</code> if the given condition matches the headers. A condition without header (ie. left empty
+     * in the policy form, which still defaults its operator) matches any request, as does a missing condition.
+     */
+    private static boolean matches(RuleCondition condition, HttpHeaders headers) {
+        if (condition == null || condition.getHeader() == null || condition.getHeader().trim().isEmpty()) {
+            return true;
+        }
+
+        switch (condition.getOperator() != null ? condition.getOperator() : ConditionOperator.EXISTS) {
+            case EXISTS:
+                return headers.containsKey(condition.getHeader());
+            case MISSING:
+                return !headers.containsKey(condition.getHeader());
+            case EQUALS:
+                return equals(headers.getFirst(condition.getHeader()), condition.getValue());
+            case NOT_EQUALS:
+                return !equals(headers.getFirst(condition.getHeader()), condition.getValue());
+            default:
+                return false;
+        }
+    }
+
+    private static boolean equals(String value, String expected) {
+        return value != null && value.equals(expected);
+    }
+}
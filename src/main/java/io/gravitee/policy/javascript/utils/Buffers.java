@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.utils;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Read-only access to the bytes of a gateway {@link Buffer} without copying them.
+ *
+ * {@link Buffer#getBytes()} copies the whole buffer. The native buffer behind it (a Vert.x buffer, backed by a Netty
+ * <code>ByteBuf</code>, on the gateway) can instead be viewed as a {@link ByteBuffer}: it is accessed by reflection, as
+ * the policy is built against the gateway API only, falling back to a copy for unknown native buffers.
+ *
+ * @author gr1d.io team
+ */
+public final class Buffers {
+
+    /**
+     * The way to view a native buffer of a given class as a {@link ByteBuffer}, or <code>null</code> if unknown.
+     */
+    private static final ClassValue<Method> VIEWS = new ClassValue<Method>() {
+        @Override
+        protected Method computeValue(Class<?> type) {
+            for (String name : new String[] { "nioBuffer", "getByteBuf" }) {
+                try {
+                    Method method = type.getMethod(name);
+                    method.setAccessible(true);
+                    return method;
+                } catch (NoSuchMethodException | RuntimeException ex) {
+                    // Not a Netty or Vert.x buffer, or not accessible
+                }
+            }
+            return null;
+        }
+    };
+
+    private Buffers() {
+    }
+
+    /**
+     * Returns a read-only view of the bytes of the given buffer, positioned at its first byte. The bytes are copied
+     * only when the native buffer can not be viewed.
+     */
+    public static ByteBuffer view(Buffer buffer) {
+        ByteBuffer view = view(buffer.getNativeBuffer(), 2);
+        if (view == null || view.remaining() != buffer.length()) {
+            view = ByteBuffer.wrap(buffer.getBytes());
+        }
+        return view.asReadOnlyBuffer();
+    }
+
+    private static ByteBuffer view(Object nativeBuffer, int depth) {
+        if (nativeBuffer instanceof ByteBuffer) {
+            return ((ByteBuffer) nativeBuffer).duplicate();
+        } else if (nativeBuffer instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) nativeBuffer);
+        } else if (nativeBuffer == null || depth == 0) {
+            return null;
+        }
+
+        Method method = VIEWS.get(nativeBuffer.getClass());
+        if (method == null) {
+            return null;
+        }
+
+        try {
+            // A Netty buffer returns a ByteBuffer, a Vert.x buffer returns its Netty buffer
+            return view(method.invoke(nativeBuffer), depth - 1);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.utils;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hex encoded SHA-1 and SHA-256 digests of strings (hashed as UTF-8), byte arrays and buffers.
+ *
+ * Message digests and UTF-8 encoders are reused per thread. Strings are encoded through a fixed size buffer, and
+ * buffers are hashed through a view of their native buffer (see {@link Buffers#view(Buffer)}), so that hashing a large
+ * body does not copy it.
+ *
+ * @author David BRASSELY (david.brassely at graviteesource.com)
+ * @author GraviteeSource Team
+ * @author gr1d.io team
+ */
+public final class Digests {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final int ENCODING_BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> messageDigest("SHA-1"));
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> messageDigest("SHA-256"));
+    private static final ThreadLocal<Encoder> ENCODER = ThreadLocal.withInitial(Encoder::new);
+
+    private Digests() {
+    }
+
+    public static String sha1(String text) {
+        return hex(digest(SHA1.get(), text));
+    }
+
+    public static String sha1(byte[] data) {
+        return hex(SHA1.get().digest(data));
+    }
+
+    public static String sha1(Buffer buffer) {
+        return hex(digest(SHA1.get(), buffer));
+    }
+
+    public static String sha256(String text) {
+        return hex(digest(SHA256.get(), text));
+    }
+
+    public static String sha256(byte[] data) {
+        return hex(SHA256.get().digest(data));
+    }
+
+    public static String sha256(Buffer buffer) {
+        return hex(digest(SHA256.get(), buffer));
+    }
+
+    /**
+     * Returns the lowercase hexadecimal representation of the given bytes.
+     */
+    public static String hex(byte[] data) {
+        final char[] chars = new char[data.length * 2];
+        for (int i = 0, j = 0; i < data.length; i++) {
+            chars[j++] = HEX[(data[i] >>> 4) & 0x0F];
+            chars[j++] = HEX[data[i] & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    private static byte[] digest(MessageDigest digest, String text) {
+        ENCODER.get().update(digest, text);
+        return digest.digest();
+    }
+
+    private static byte[] digest(MessageDigest digest, Buffer buffer) {
+        digest.update(Buffers.view(buffer));
+        return digest.digest();
+    }
+
+    private static MessageDigest messageDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException nsae) {
+            // Every Java platform is required to support SHA-1 and SHA-256
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    private static final class Encoder {
+
+        // Malformed characters are replaced, as String.getBytes does
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final ByteBuffer buffer = ByteBuffer.allocate(ENCODING_BUFFER_SIZE);
+
+        void update(MessageDigest digest, String text) {
+            final CharBuffer chars = CharBuffer.wrap(text);
+            encoder.reset();
+            boolean flushed = false;
+            while (!flushed) {
+                boolean overflow = encoder.encode(chars, buffer, true).isOverflow();
+                if (!overflow) {
+                    flushed = !encoder.flush(buffer).isOverflow();
+                }
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+    }
+}
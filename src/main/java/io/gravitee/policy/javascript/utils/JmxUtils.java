@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * @author gr1d.io team
+ */
+public final class JmxUtils {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JmxUtils.class);
+
+    private static final String DOMAIN = "io.gravitee.policy.javascript";
+
+    private JmxUtils() {
+    }
+
+    /**
+     * Registers the given MBean under the policy domain with the given key properties (ie. <code>type=Foo</code>),
+     * replacing any MBean previously registered with the same name (ie. by a previous instance of the plugin class
+     * loader).
+     */
+    public static void register(Object mbean, String properties) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ':' + properties);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(mbean, name);
+        } catch (Exception ex) {
+            LOGGER.warn("Unable to register JMX metrics for {}", properties, ex);
+        }
+    }
+
+    /**
+     * Unregisters the MBean registered under the policy domain with the given key properties, if any.
+     */
+    public static void unregister(String properties) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ':' + properties);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception ex) {
+            LOGGER.warn("Unable to unregister JMX metrics for {}", properties, ex);
+        }
+    }
+}
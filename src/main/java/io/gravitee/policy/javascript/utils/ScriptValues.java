@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.utils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * @author gr1d.io team
+ */
+public final class ScriptValues {
+
+    private static final String SCRIPT_OBJECT = "ScriptObjectMirror";
+    private static final ClassValue<Method> IS_ARRAY = scriptObjectMethod("isArray");
+    private static final ClassValue<Method> IS_FUNCTION = scriptObjectMethod("isFunction");
+
+    private ScriptValues() {
+    }
+
+    /**
+     * Script engines hand <code>undefined</code> over to Java as an internal singleton (ie.
+     * <code>jdk.nashorn.internal.runtime.Undefined</code>) which can not be referenced from the policy.
+     */
+    public static boolean isUndefined(Object value) {
+        return value != null && "Undefined".equals(value.getClass().getSimpleName());
+    }
+
+    public static boolean isNullOrUndefined(Object value) {
+        return value == null || isUndefined(value);
+    }
+
+    /**
+     * Returns <code>true</code> if the given value is a script array handed over to Java as a script object
+     * (ie. <code>ScriptObjectMirror</code>), which is a {@link java.util.Map} indexed by position.
+     */
+    public static boolean isArray(Object value) {
+        return invoke(IS_ARRAY, value);
+    }
+
+    /**
+     * Returns <code>true</code> if the given value is a script function handed over to Java as a script object.
+     */
+    public static boolean isFunction(Object value) {
+        // GraalJS hands functions over as maps which are also functions
+        return invoke(IS_FUNCTION, value) || (value instanceof Map && value instanceof Function);
+    }
+
+    /**
+     * Returns the elements of the given value when it is a script array or a collection, or <code>null</code>.
+     */
+    public static List<Object> toList(Object value) {
+        if (value instanceof Map && isArray(value)) {
+            return new ArrayList<>(((Map<?, ?>) value).values());
+        } else if (value instanceof Collection) {
+            return new ArrayList<>((Collection<?>) value);
+        }
+        return null;
+    }
+
+    /**
+     * Returns a deep copy of the given value, in which maps, script objects and collections are copied to unmodifiable
+     * maps and lists (script arrays included), so that it can be shared between script contexts and threads. Other
+     * values are returned as is, and <code>undefined</code> is returned as <code>null</code>.
+     *
+     * @throws IllegalArgumentException if the value is or contains a script function
+     */
+    public static Object freeze(Object value) {
+        if (isNullOrUndefined(value)) {
+            return null;
+        } else if (isFunction(value)) {
+            throw new IllegalArgumentException("Script functions can not be shared");
+        } else if (value instanceof Map && isArray(value)) {
+            return freeze(((Map<?, ?>) value).values());
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            Map<Object, Object> copy = new LinkedHashMap<>(Math.max(16, (int) (map.size() / 0.75f) + 1));
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                copy.put(entry.getKey(), freeze(entry.getValue()));
+            }
+            return Collections.unmodifiableMap(copy);
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            List<Object> copy = new ArrayList<>(collection.size());
+            for (Object element : collection) {
+                copy.add(freeze(element));
+            }
+            return Collections.unmodifiableList(copy);
+        }
+
+        return value;
+    }
+
+    private static boolean invoke(ClassValue<Method> method, Object value) {
+        if (value == null) {
+            return false;
+        }
+
+        Method m = method.get(value.getClass());
+        try {
+            return m != null && Boolean.TRUE.equals(m.invoke(value));
+        } catch (ReflectiveOperationException ex) {
+            return false;
+        }
+    }
+
+    private static ClassValue<Method> scriptObjectMethod(String name) {
+        return new ClassValue<Method>() {
+            @Override
+            protected Method computeValue(Class<?> type) {
+                if (!SCRIPT_OBJECT.equals(type.getSimpleName())) {
+                    return null;
+                }
+                try {
+                    return type.getMethod(name);
+                } catch (NoSuchMethodException ex) {
+                    return null;
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.warmup;
+
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.gateway.api.Request;
+import io.gravitee.gateway.api.Response;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.stream.ReadWriteStream;
+import io.gravitee.policy.javascript.JavaScriptPolicy;
+import io.gravitee.policy.javascript.Phase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the scripts of a policy against stub requests and responses before it handles any traffic, so that the engine
+ * links their call sites and the JIT compiles them ahead of the first requests.
+ *
+ * Each phase is run in turn, and each execution is awaited before the next one, so that the warm-up never holds more
+ * than one script context or worker at a time.
+ *
+ * @author gr1d.io team
+ */
+public final class ScriptWarmUp {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScriptWarmUp.class);
+
+    private final JavaScriptPolicy policy;
+    private final String body;
+    private final long timeout;
+
+    /**
+     * @param body body given to the content scripts
+     * @param timeout time an execution has to complete, in milliseconds
+     */
+    public ScriptWarmUp(JavaScriptPolicy policy, String body, long timeout) {
+        this.policy = policy;
+        this.body = body;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns whether the given execution context is the one of a warm-up execution, whose outputs are not memoized
+     * and whose bodies are not captured, nor its executions recorded in the metrics of the scripts.
+     */
+    public static boolean isWarmUp(ExecutionContext executionContext) {
+        return executionContext instanceof WarmUpExecutionContext;
+    }
+
+    /**
+     * Runs each phase of the policy the given number of times, and returns the number of executions which did not
+     * let the request continue (ie. the script threw, or failed the stub request on purpose).
+     */
+    public int run(int iterations) {
+        final long start = System.nanoTime();
+        int failures = 0;
+
+        try {
+            for (int i = 0; i < iterations; i++) {
+                for (Phase phase : Phase.values()) {
+                    if (!execute(phase)) {
+                        failures++;
+                    }
+                }
+            }
+        } catch (TimeoutException ex) {
+            LOGGER.warn("Warm-up of the javascript policy stopped: a script did not complete within {} ms", timeout);
+            return failures;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return failures;
+        }
+
+        LOGGER.debug("Javascript policy warmed up by {} iterations in {} ms ({} failed executions)", iterations,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failures);
+        return failures;
+    }
+
+    private boolean execute(Phase phase) throws TimeoutException, InterruptedException {
+        final Request request = new WarmUpRequest();
+        final Response response = new WarmUpResponse();
+        final ExecutionContext executionContext = new WarmUpExecutionContext();
+        final WarmUpPolicyChain policyChain = new WarmUpPolicyChain();
+
+        try {
+            switch (phase) {
+                case REQUEST:
+                    policy.onRequest(request, response, executionContext, policyChain);
+                    break;
+                case RESPONSE:
+                    policy.onResponse(request, response, executionContext, policyChain);
+                    break;
+                case REQUEST_CONTENT:
+                    write(policy.onRequestContent(request, response, executionContext, policyChain), policyChain);
+                    break;
+                case RESPONSE_CONTENT:
+                    write(policy.onResponseContent(request, response, executionContext, policyChain), policyChain);
+                    break;
+            }
+            return policyChain.completion().get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    private void write(ReadWriteStream<Buffer> stream, WarmUpPolicyChain policyChain) {
+        if (stream == null) {
+            // No content script for this phase
+            policyChain.done();
+            return;
+        }
+
+        stream.bodyHandler(chunk -> { });
+        stream.endHandler(result -> policyChain.done());
+        stream.write(Buffer.buffer(body));
+        stream.end();
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.warmup;
+
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.gateway.api.expression.TemplateEngine;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Execution context given to the scripts run while warming up the policy. Its API is not the one of the policy, so
+ * that the values cached by the warm-up scripts are kept apart.
+ *
+ * @author gr1d.io team
+ */
+class WarmUpExecutionContext implements ExecutionContext {
+
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    WarmUpExecutionContext() {
+        attributes.put(ATTR_API, "javascript-warm-up");
+    }
+
+    @Override
+    public <T> T getComponent(Class<T> componentClass) {
+        return null;
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public TemplateEngine getTemplateEngine() {
+        return null;
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.warmup;
+
+import io.gravitee.gateway.api.Request;
+import io.gravitee.gateway.api.Response;
+import io.gravitee.policy.api.PolicyChain;
+import io.gravitee.policy.api.PolicyResult;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Policy chain completing once the policy has let the warm-up execution continue or has failed it.
+ *
+ * @author gr1d.io team
+ */
+class WarmUpPolicyChain implements PolicyChain {
+
+    private final CompletableFuture<Boolean> completion = new CompletableFuture<>();
+
+    @Override
+    public void doNext(Request request, Response response) {
+        completion.complete(true);
+    }
+
+    @Override
+    public void failWith(PolicyResult policyResult) {
+        completion.complete(false);
+    }
+
+    @Override
+    public void streamFailWith(PolicyResult policyResult) {
+        completion.complete(false);
+    }
+
+    /**
+     * Completes the execution, ie. once the body has been written downstream.
+     */
+    void done() {
+        completion.complete(true);
+    }
+
+    CompletableFuture<Boolean> completion() {
+        return completion;
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.warmup;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.gateway.api.Response;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.stream.WriteStream;
+
+/**
+ * Response given to the scripts run while warming up the policy.
+ *
+ * @author gr1d.io team
+ */
+class WarmUpResponse implements Response {
+
+    private final HttpHeaders headers = new HttpHeaders();
+    private int status = 200;
+
+    @Override
+    public Response status(int statusCode) {
+        this.status = statusCode;
+        return this;
+    }
+
+    @Override
+    public int status() {
+        return status;
+    }
+
+    @Override
+    public HttpHeaders headers() {
+        return headers;
+    }
+
+    @Override
+    public WriteStream<Buffer> write(Buffer content) {
+        return this;
+    }
+
+    @Override
+    public void end() {
+    }
+}
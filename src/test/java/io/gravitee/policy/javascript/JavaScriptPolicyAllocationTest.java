@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.stream.ReadWriteStream;
+import io.gravitee.policy.javascript.configuration.JavaScriptPolicyConfiguration;
+import io.gravitee.policy.javascript.configuration.ScriptEngineType;
+import io.gravitee.policy.javascript.fixtures.FakeExecutionContext;
+import io.gravitee.policy.javascript.fixtures.FakeRequest;
+import io.gravitee.policy.javascript.fixtures.FakeResponse;
+import io.gravitee.policy.javascript.fixtures.RecordingPolicyChain;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Guards the steady-state allocation of the policy, measured with the per-thread allocation counter of the JVM. The
+ * limits are about twice the allocation measured on JDK 17 (2.4 KB and 3.5 KB per call with Nashorn, 14 KB with
+ * GraalJS), so that they fail as soon as the objects reused across calls (script contexts, request and response
+ * views, results) or a few wrappers are allocated again on each call.
+ *
+ * @author gr1d.io team
+ */
+@RunWith(Parameterized.class)
+public class JavaScriptPolicyAllocationTest {
+
+    private static final int WARM_UP_CALLS = 20_000;
+    private static final int MEASURED_CALLS = 10_000;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] {
+                { ScriptEngineType.NASHORN, 5 * 1024, 7 * 1024 },
+                { ScriptEngineType.GRAALJS, 28 * 1024, 29 * 1024 }
+        });
+    }
+
+    private final ScriptEngineType engine;
+    private final long maxBytesPerRequest;
+    private final long maxBytesPerContent;
+
+    private final FakeRequest request = new FakeRequest();
+    private final FakeResponse response = new FakeResponse();
+    private final FakeExecutionContext executionContext = new FakeExecutionContext();
+    private final RecordingPolicyChain policyChain = new RecordingPolicyChain();
+    private final Buffer body = Buffer.buffer("{\"id\":1,\"name\":\"gravitee\"}");
+
+    private ThreadMXBean threads;
+    private JavaScriptPolicy policy;
+
+    public JavaScriptPolicyAllocationTest(ScriptEngineType engine, long maxBytesPerRequest, long maxBytesPerContent) {
+        this.engine = engine;
+        this.maxBytesPerRequest = maxBytesPerRequest;
+        this.maxBytesPerContent = maxBytesPerContent;
+    }
+
+    @Before
+    public void setUp() {
+        threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        ((com.sun.management.ThreadMXBean) threads).setThreadAllocatedMemoryEnabled(true);
+
+        JavaScriptPolicyConfiguration configuration = new JavaScriptPolicyConfiguration();
+        configuration.setEngine(engine);
+        configuration.setOnRequestScript("request.headers.set('X-Gravitee-Script', 'on-request');");
+        configuration.setOnResponseContentScript("response.content.length > 0 ? response.content : '{}'");
+        policy = new JavaScriptPolicy(configuration);
+    }
+
+    @Test
+    public void shouldNotAllocatePerCallOnRequest() {
+        long bytesPerCall = measure(() -> policy.onRequest(request, response, executionContext, policyChain));
+
+        assertTrue(policyChain.isNext());
+        assertTrue("onRequest allocates " + bytesPerCall + " bytes per call", bytesPerCall < maxBytesPerRequest);
+    }
+
+    @Test
+    public void shouldNotAllocatePerCallOnResponseContent() {
+        long bytesPerCall = measure(() -> {
+            ReadWriteStream<Buffer> stream = policy.onResponseContent(request, response, executionContext, policyChain);
+            stream.bodyHandler(result -> { });
+            stream.write(body);
+            stream.end();
+        });
+
+        assertTrue(policyChain.getFailure() == null);
+        assertTrue("onResponseContent allocates " + bytesPerCall + " bytes per call", bytesPerCall < maxBytesPerContent);
+    }
+
+    private long measure(Runnable call) {
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        long thread = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARM_UP_CALLS; i++) {
+            call.run();
+        }
+        long before = allocations.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            call.run();
+        }
+        return (allocations.getThreadAllocatedBytes(thread) - before) / MEASURED_CALLS;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript;
+
+import io.gravitee.common.http.HttpStatusCode;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.stream.ReadWriteStream;
+import io.gravitee.policy.javascript.configuration.JavaScriptPolicyConfiguration;
+import io.gravitee.policy.javascript.configuration.ScriptCondition;
+import io.gravitee.policy.javascript.configuration.ScriptEngineType;
+import io.gravitee.policy.javascript.fixtures.FakeExecutionContext;
+import io.gravitee.policy.javascript.fixtures.FakeRequest;
+import io.gravitee.policy.javascript.fixtures.FakeResponse;
+import io.gravitee.policy.javascript.fixtures.RecordingPolicyChain;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author gr1d.io team
+ */
+public class JavaScriptPolicyConditionTest {
+
+    private JavaScriptPolicyConfiguration configuration;
+    private final RecordingPolicyChain policyChain = new RecordingPolicyChain();
+
+    @Before
+    public void setUp() {
+        configuration = new JavaScriptPolicyConfiguration();
+        configuration.setEngine(ScriptEngineType.NASHORN);
+        configuration.setOnRequestScript("request.headers.set('X-Script', 'run');");
+        configuration.setOnRequestContentScript("request.content.toUpperCase()");
+    }
+
+    @Test
+    public void shouldNotRunTheScriptWhenTheConditionDoesNotMatch() {
+        configuration.setOnRequestCondition(pathPattern("/v1/.*"));
+        FakeRequest request = new FakeRequest().path("/v2/users");
+        new JavaScriptPolicy(configuration).onRequest(request, new FakeResponse(), new FakeExecutionContext(),
+                policyChain);
+
+        assertTrue(policyChain.isNext());
+        assertFalse(request.headers().containsKey("X-Script"));
+    }
+
+    @Test
+    public void shouldFailTheRequestsOfAnInvalidCondition() {
+        configuration.setOnRequestCondition(pathPattern("/v1/(.*"));
+        new JavaScriptPolicy(configuration).onRequest(new FakeRequest().path("/v1/users"), new FakeResponse(),
+                new FakeExecutionContext(), policyChain);
+
+        assertFalse(policyChain.isNext());
+        assertEquals(HttpStatusCode.INTERNAL_SERVER_ERROR_500, policyChain.getFailure().httpStatusCode());
+        assertTrue(policyChain.getFailure().message().startsWith("Invalid script condition: invalid path pattern"));
+    }
+
+    @Test
+    public void shouldFailTheContentOfAnInvalidCondition() {
+        configuration.setOnRequestContentCondition(pathPattern("[a-"));
+        ReadWriteStream<Buffer> stream = new JavaScriptPolicy(configuration).onRequestContent(
+                new FakeRequest().path("/v1/users"), new FakeResponse(), new FakeExecutionContext(), policyChain);
+        StringBuilder body = new StringBuilder();
+        stream.bodyHandler(chunk -> body.append(chunk));
+        stream.write(Buffer.buffer("{}"));
+        stream.end();
+
+        assertTrue(policyChain.isStreamed());
+        assertEquals(HttpStatusCode.INTERNAL_SERVER_ERROR_500, policyChain.getFailure().httpStatusCode());
+        assertTrue(policyChain.getFailure().message().startsWith("Invalid script condition"));
+        assertEquals(0, body.length());
+    }
+
+    private static ScriptCondition pathPattern(String pattern) {
+        ScriptCondition condition = new ScriptCondition();
+        condition.setPathPattern(pattern);
+        return condition;
+    }
+}
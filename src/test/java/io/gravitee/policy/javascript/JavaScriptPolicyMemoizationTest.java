@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.stream.ReadWriteStream;
+import io.gravitee.policy.javascript.configuration.JavaScriptPolicyConfiguration;
+import io.gravitee.policy.javascript.configuration.ScriptEngineType;
+import io.gravitee.policy.javascript.fixtures.FakeExecutionContext;
+import io.gravitee.policy.javascript.fixtures.FakeRequest;
+import io.gravitee.policy.javascript.fixtures.FakeResponse;
+import io.gravitee.policy.javascript.fixtures.RecordingPolicyChain;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author gr1d.io team
+ */
+public class JavaScriptPolicyMemoizationTest {
+
+    private static final String MEMOIZED = Phase.RESPONSE_CONTENT.attribute("memoized");
+
+    private JavaScriptPolicy policy;
+
+    @Before
+    public void setUp() {
+        JavaScriptPolicyConfiguration configuration = new JavaScriptPolicyConfiguration();
+        configuration.setEngine(ScriptEngineType.NASHORN);
+        configuration.setMemoize(true);
+        configuration.setMemoizeMaxSize(64);
+        configuration.setOnResponseContentScript(
+                "response.content.length > 32 ? response.content + response.content : 'small'");
+        policy = new JavaScriptPolicy(configuration);
+    }
+
+    @Test
+    public void shouldReuseTheOutputOfIdenticalBodies() {
+        FakeExecutionContext first = transform("/small", body(8));
+        FakeExecutionContext second = transform("/small", body(8));
+
+        assertEquals(false, first.getAttribute(MEMOIZED));
+        assertEquals(true, second.getAttribute(MEMOIZED));
+    }
+
+    @Test
+    public void shouldNotReuseTheOutputOfAnotherQueryString() {
+        transform("/query?page=1", 200, body(8));
+        FakeExecutionContext second = transform("/query?page=2", 200, body(8));
+
+        assertEquals(false, second.getAttribute(MEMOIZED));
+    }
+
+    @Test
+    public void shouldNotReuseTheOutputOfAnotherStatus() {
+        transform("/status", 200, body(8));
+        FakeExecutionContext second = transform("/status", 404, body(8));
+
+        assertEquals(false, second.getAttribute(MEMOIZED));
+    }
+
+    @Test
+    public void shouldNotMemoizeBodiesLargerThanTheMaxSize() {
+        transform("/large-body", body(65));
+        FakeExecutionContext second = transform("/large-body", body(65));
+
+        assertNull(second.getAttribute(MEMOIZED));
+    }
+
+    @Test
+    public void shouldNotStoreOutputsLargerThanTheMaxSize() {
+        transform("/large-output", body(40));
+        FakeExecutionContext second = transform("/large-output", body(40));
+
+        assertEquals(false, second.getAttribute(MEMOIZED));
+    }
+
+    private FakeExecutionContext transform(String uri, String body) {
+        return transform(uri, 200, body);
+    }
+
+    private FakeExecutionContext transform(String uri, int status, String body) {
+        FakeExecutionContext executionContext = new FakeExecutionContext();
+        RecordingPolicyChain policyChain = new RecordingPolicyChain();
+        ReadWriteStream<Buffer> stream = policy.onResponseContent(new FakeRequest().uri(uri),
+                new FakeResponse().status(status), executionContext, policyChain);
+        stream.bodyHandler(result -> { });
+        stream.write(Buffer.buffer(body));
+        stream.end();
+
+        assertNull(policyChain.getFailure());
+        return executionContext;
+    }
+
+    private static String body(int length) {
+        char[] body = new char[length];
+        Arrays.fill(body, 'x');
+        return new String(body);
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.cache;
+
+import io.gravitee.policy.javascript.engine.JavaScriptEngine;
+import io.gravitee.policy.javascript.engine.Script;
+import io.gravitee.policy.javascript.engine.ScriptScope;
+import io.gravitee.policy.javascript.utils.Digests;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.script.ScriptException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * @author gr1d.io team
+ */
+public class CompiledScriptCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final CountingEngine engine = new CountingEngine();
+
+    @Test
+    public void shouldCompileOnce() throws ScriptException {
+        CompiledScriptCache cache = new CompiledScriptCache(engine, 10);
+
+        CachedScript first = cache.get("var a = 1;");
+        CachedScript second = cache.get("var a = 1;");
+
+        assertSame(first, second);
+        assertEquals(Digests.sha1("var a = 1;"), first.getDigest());
+        assertEquals(1, engine.compiled.size());
+    }
+
+    @Test
+    public void shouldEvictTheLeastRecentlyUsedScript() throws ScriptException {
+        CompiledScriptCache cache = new CompiledScriptCache(engine, 2);
+        CachedScript a = cache.get("var a = 1;");
+        cache.get("var b = 2;");
+        cache.get("var a = 1;");
+        cache.get("var c = 3;");
+
+        assertEquals(2, cache.size());
+        assertSame(a, cache.get("var a = 1;"));
+        cache.get("var b = 2;");
+        assertEquals(4, engine.compiled.size());
+    }
+
+    @Test
+    public void shouldNotCacheInvalidScripts() {
+        CompiledScriptCache cache = new CompiledScriptCache(engine, 10);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.get("invalid");
+                fail("The script should not compile");
+            } catch (ScriptException ex) {
+                assertEquals(0, cache.size());
+            }
+        }
+    }
+
+    @Test
+    public void shouldDigestSources() {
+        CompiledScriptCache cache = new CompiledScriptCache(engine, 10);
+
+        assertEquals(Digests.sha1("var a = 1;"), cache.digest("var a = 1;"));
+        assertEquals(Digests.sha1("var a = 1;"), cache.digest("var a = 1;"));
+    }
+
+    @Test
+    public void shouldPreloadTheStoredScripts() throws ScriptException, IOException {
+        CompiledScriptCache cache = new CompiledScriptCache(engine, 10, open());
+        CachedScript stored = cache.get("var a = 1;");
+        try {
+            cache.get("invalid");
+        } catch (ScriptException ex) {
+            // Not stored
+        }
+
+        CompiledScriptCache restarted = new CompiledScriptCache(engine, 10, open());
+        assertEquals(1, restarted.preload());
+        assertEquals(1, restarted.size());
+
+        int compiled = engine.compiled.size();
+        CachedScript preloaded = restarted.get("var a = 1;");
+        assertNotSame(stored, preloaded);
+        assertEquals(compiled, engine.compiled.size());
+    }
+
+    private ScriptStore open() throws IOException {
+        return ScriptStore.open(folder.getRoot().toPath(), engine.getName(), engine.getVersion(), 10, Runnable::run);
+    }
+
+    /**
+     * Compiles any source but <code>invalid</code>, remembering the compiled sources.
+     */
+    private static final class CountingEngine implements JavaScriptEngine {
+
+        private final List<String> compiled = new ArrayList<>();
+
+        @Override
+        public String getName() {
+            return "counting";
+        }
+
+        @Override
+        public String getVersion() {
+            return "1.0";
+        }
+
+        @Override
+        public Script compile(String source) throws ScriptException {
+            if ("invalid".equals(source)) {
+                throw new ScriptException("Invalid script");
+            }
+            compiled.add(source);
+            return new Script() {
+            };
+        }
+
+        @Override
+        public ScriptScope createScope() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void dispose() {
+        }
+    }
+}
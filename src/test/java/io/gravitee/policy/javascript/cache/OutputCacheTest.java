@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.cache;
+
+import io.gravitee.policy.api.PolicyResult;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author gr1d.io team
+ */
+public class OutputCacheTest {
+
+    @Test
+    public void shouldGetStoredOutputs() {
+        OutputCache cache = new OutputCache(1024);
+        cache.put("a", OutputCache.Output.content(new byte[] { 1, 2 }), 60000);
+
+        assertArrayEquals(new byte[] { 1, 2 }, cache.get("a", 10).getContent());
+        assertNull(cache.get("b", 10));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(10, cache.getBytesSaved());
+        assertEquals(0.5, cache.getHitRatio(), 0);
+    }
+
+    @Test
+    public void shouldStoreFailures() {
+        OutputCache cache = new OutputCache(1024);
+        PolicyResult failure = PolicyResult.failure(400, "Bad request");
+        cache.put("a", OutputCache.Output.failure(failure), 60000);
+
+        OutputCache.Output output = cache.get("a", 0);
+        assertNotNull(output);
+        assertNull(output.getContent());
+        assertSame(failure, output.getFailure());
+    }
+
+    @Test
+    public void shouldEvictTheLeastRecentlyUsedOutputs() {
+        OutputCache cache = new OutputCache(3 * 256 + 30);
+        cache.put("a", OutputCache.Output.content(new byte[10]), 60000);
+        cache.put("b", OutputCache.Output.content(new byte[10]), 60000);
+        cache.put("c", OutputCache.Output.content(new byte[10]), 60000);
+        cache.get("a", 0);
+        cache.put("d", OutputCache.Output.content(new byte[10]), 60000);
+
+        assertNotNull(cache.get("a", 0));
+        assertNull(cache.get("b", 0));
+        assertNotNull(cache.get("d", 0));
+        assertEquals(3, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3 * 256 + 30, cache.getBytes());
+    }
+
+    @Test
+    public void shouldNotStoreOutputsLargerThanTheCache() {
+        OutputCache cache = new OutputCache(1024);
+        cache.put("a", OutputCache.Output.content(new byte[1024]), 60000);
+
+        assertNull(cache.get("a", 0));
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void shouldReplaceOutputs() {
+        OutputCache cache = new OutputCache(1024);
+        cache.put("a", OutputCache.Output.content(new byte[10]), 60000);
+        cache.put("a", OutputCache.Output.content(new byte[20]), 60000);
+
+        assertEquals(20, cache.get("a", 0).getContent().length);
+        assertEquals(256 + 20, cache.getBytes());
+    }
+
+    @Test
+    public void shouldExpireOutputs() throws InterruptedException {
+        OutputCache cache = new OutputCache(1024);
+        cache.put("a", OutputCache.Output.content(new byte[10]), 20);
+        Thread.sleep(50);
+
+        assertNull(cache.get("a", 0));
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getBytes());
+    }
+}
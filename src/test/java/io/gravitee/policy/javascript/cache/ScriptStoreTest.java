@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.cache;
+
+import io.gravitee.policy.javascript.utils.Digests;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author gr1d.io team
+ */
+public class ScriptStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Runnable> writes = new ArrayList<>();
+
+    private Path root;
+
+    @Before
+    public void setUp() {
+        root = folder.getRoot().toPath();
+    }
+
+    @Test
+    public void shouldLoadStoredScripts() throws IOException {
+        ScriptStore store = open("1.0", 10);
+        store("var a = 1;", store);
+        store("var b = 2;", store);
+
+        Map<String, String> sources = open("1.0", 10).load();
+
+        assertEquals(2, sources.size());
+        assertEquals("var a = 1;", sources.get(Digests.sha1("var a = 1;")));
+        assertEquals("var b = 2;", sources.get(Digests.sha1("var b = 2;")));
+    }
+
+    @Test
+    public void shouldWriteInTheBackground() throws IOException {
+        ScriptStore store = open("1.0", 10);
+        store.store(Digests.sha1("var a = 1;"), "var a = 1;");
+
+        assertTrue(open("1.0", 10).load().isEmpty());
+        assertEquals(1, writes.size());
+
+        writes.remove(0).run();
+        assertEquals(1, open("1.0", 10).load().size());
+    }
+
+    @Test
+    public void shouldNotWriteAStoredScriptAgain() throws IOException {
+        ScriptStore store = open("1.0", 10);
+        store("var a = 1;", store);
+
+        store.store(Digests.sha1("var a = 1;"), "var a = 1;");
+
+        assertTrue(writes.isEmpty());
+    }
+
+    @Test
+    public void shouldDeleteTheOldestScriptsOnStore() throws IOException {
+        ScriptStore store = open("1.0", 2);
+        store("var a = 1;", store);
+        store("var b = 2;", store);
+        store("var c = 3;", store);
+
+        assertEquals(2, scriptFiles("1.0").size());
+        assertFalse(Files.exists(scriptFile("1.0", "var a = 1;")));
+    }
+
+    @Test
+    public void shouldDeleteTheOldestScriptsOnLoad() throws IOException {
+        ScriptStore store = open("1.0", 10);
+        store("var a = 1;", store);
+        store("var b = 2;", store);
+        Files.setLastModifiedTime(scriptFile("1.0", "var a = 1;"), FileTime.fromMillis(1000));
+
+        Map<String, String> sources = open("1.0", 1).load();
+
+        assertEquals(1, sources.size());
+        assertTrue(sources.containsValue("var b = 2;"));
+        assertFalse(Files.exists(scriptFile("1.0", "var a = 1;")));
+    }
+
+    @Test
+    public void shouldTrimFromTheLoadedScripts() throws IOException {
+        ScriptStore store = open("1.0", 10);
+        store("var a = 1;", store);
+        Files.setLastModifiedTime(scriptFile("1.0", "var a = 1;"), FileTime.fromMillis(1000));
+        store("var b = 2;", store);
+
+        store = open("1.0", 2);
+        store.load();
+        store("var c = 3;", store);
+
+        assertFalse(Files.exists(scriptFile("1.0", "var a = 1;")));
+        assertTrue(Files.exists(scriptFile("1.0", "var b = 2;")));
+        assertTrue(Files.exists(scriptFile("1.0", "var c = 3;")));
+    }
+
+    @Test
+    public void shouldDeleteCorruptedScripts() throws IOException {
+        ScriptStore store = open("1.0", 10);
+        store("var a = 1;", store);
+        Path file = scriptFile("1.0", "var a = 1;");
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] = 'X';
+        Files.write(file, bytes);
+        Files.write(file.resolveSibling("unknown.js"), "var b = 2;".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(open("1.0", 10).load().isEmpty());
+        assertTrue(scriptFiles("1.0").isEmpty());
+    }
+
+    @Test
+    public void shouldDeleteTheStoresOfOtherVersions() throws IOException {
+        ScriptStore store = open("1.0", 10);
+        store("var a = 1;", store);
+
+        open("2.0", 10);
+
+        assertFalse(Files.exists(root.resolve("engine-1.0")));
+        assertTrue(Files.isDirectory(root.resolve("engine-2.0")));
+    }
+
+    private ScriptStore open(String version, int maxSize) throws IOException {
+        return ScriptStore.open(root, "engine", version, maxSize, writes::add);
+    }
+
+    private void store(String source, ScriptStore store) {
+        store.store(Digests.sha1(source), source);
+        while (!writes.isEmpty()) {
+            writes.remove(0).run();
+        }
+    }
+
+    private Path scriptFile(String version, String source) {
+        return root.resolve("engine-" + version).resolve("scripts").resolve(Digests.sha1(source) + ".js");
+    }
+
+    private List<Path> scriptFiles(String version) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Files.newDirectoryStream(root.resolve("engine-" + version).resolve("scripts")).forEach(files::add);
+        return files;
+    }
+}
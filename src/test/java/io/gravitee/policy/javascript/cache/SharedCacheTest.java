@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author gr1d.io team
+ */
+public class SharedCacheTest {
+
+    @Test
+    public void shouldGetPutAndRemove() {
+        SharedCache cache = new SharedCache(10, 0, 0);
+        cache.put("a", "1");
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.remove("a"));
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void shouldRemoveOnNullValue() {
+        SharedCache cache = new SharedCache(10, 0, 0);
+        cache.put("a", "1");
+        cache.put("a", null);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldEvictTheLeastRecentlyUsedEntry() {
+        SharedCache cache = new SharedCache(2, 0, 0);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void shouldExpireEntries() throws InterruptedException {
+        SharedCache cache = new SharedCache(10, 50, 0);
+        cache.put("a", "1");
+        cache.put("b", "2", 0);
+
+        Thread.sleep(100);
+
+        assertNull(cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        assertEquals(1, cache.getExpirations());
+    }
+
+    @Test
+    public void shouldStoreUnmodifiableCopies() {
+        SharedCache cache = new SharedCache(10, 0, 0);
+        Map<String, Object> value = new HashMap<>();
+        value.put("items", new ArrayList<>(Arrays.asList(1, 2)));
+        cache.put("a", value);
+        value.put("other", true);
+
+        Map<?, ?> cached = (Map<?, ?>) cache.get("a");
+        assertEquals(1, cached.size());
+        assertEquals(Arrays.asList(1, 2), cached.get("items"));
+        try {
+            ((List<?>) cached.get("items")).clear();
+            fail("The cached value should not be modifiable");
+        } catch (UnsupportedOperationException ex) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void shouldComputeOnceWhenAbsent() throws Exception {
+        SharedCache cache = new SharedCache(10, 0, 0);
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> first = executor.submit(() -> cache.computeIfAbsent("a", key -> {
+                computations.incrementAndGet();
+                computing.countDown();
+                await(release);
+                return "1";
+            }));
+            assertTrue(computing.await(5, TimeUnit.SECONDS));
+            Future<Object> second = executor.submit(() -> cache.computeIfAbsent("a", key -> {
+                computations.incrementAndGet();
+                return "2";
+            }));
+
+            // Other keys remain available while a value is computed
+            assertNull(cache.get("a"));
+            cache.put("b", "2");
+            assertEquals("2", cache.get("b"));
+
+            release.countDown();
+            assertEquals("1", first.get(5, TimeUnit.SECONDS));
+            assertEquals("1", second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, computations.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldStopWaitingForASlowComputation() throws Exception {
+        SharedCache cache = new SharedCache(10, 0, 50);
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> first = executor.submit(() -> cache.computeIfAbsent("a", key -> {
+                computing.countDown();
+                await(release);
+                return "1";
+            }));
+            assertTrue(computing.await(5, TimeUnit.SECONDS));
+
+            try {
+                cache.computeIfAbsent("a", key -> "2");
+                fail("The wait should have timed out");
+            } catch (RejectedExecutionException ex) {
+                // Expected
+            }
+
+            release.countDown();
+            assertEquals("1", first.get(5, TimeUnit.SECONDS));
+            assertEquals("1", cache.computeIfAbsent("a", key -> "2"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldNotStoreFailedComputations() {
+        SharedCache cache = new SharedCache(10, 0, 0);
+        try {
+            cache.computeIfAbsent("a", key -> {
+                throw new IllegalArgumentException("failed");
+            });
+            fail("The computation should fail");
+        } catch (IllegalArgumentException ex) {
+            assertEquals(0, cache.size());
+        }
+
+        assertEquals("1", cache.computeIfAbsent("a", key -> "1"));
+        assertNull(cache.computeIfAbsent("b", key -> null));
+        assertEquals(1, cache.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectRecursiveComputations() {
+        SharedCache cache = new SharedCache(10, 0, 0);
+        cache.computeIfAbsent("a", key -> cache.computeIfAbsent("a", nested -> "1"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
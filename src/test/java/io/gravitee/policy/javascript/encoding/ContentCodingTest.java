@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.encoding;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author gr1d.io team
+ */
+public class ContentCodingTest {
+
+    @Test
+    public void shouldParseContentEncodings() {
+        assertEquals(ContentCoding.GZIP, ContentCoding.of("gzip"));
+        assertEquals(ContentCoding.GZIP, ContentCoding.of(" x-gzip "));
+        assertEquals(ContentCoding.DEFLATE, ContentCoding.of("Deflate"));
+    }
+
+    @Test
+    public void shouldIgnoreUnsupportedContentEncodings() {
+        assertNull(ContentCoding.of(null));
+        assertNull(ContentCoding.of("identity"));
+        assertNull(ContentCoding.of("br"));
+        assertNull(ContentCoding.of("gzip, deflate"));
+    }
+
+    @Test
+    public void shouldParseContentEncodingsWhateverTheDefaultLocale() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertEquals(ContentCoding.GZIP, ContentCoding.of("GZIP"));
+            assertEquals(ContentCoding.GZIP, ContentCoding.of("X-GZIP"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.encoding;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author gr1d.io team
+ */
+public class ContentDecoderTest {
+
+    private static final byte[] BODY = body();
+
+    @Test
+    public void shouldDecodeGzipBodies() throws IOException {
+        assertArrayEquals(BODY, decode(ContentCoding.GZIP, gzip(BODY), Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void shouldDecodeGzipBodiesByteByByte() throws IOException {
+        assertArrayEquals(BODY, decode(ContentCoding.GZIP, gzip(BODY), 1));
+    }
+
+    @Test
+    public void shouldDecodeConcatenatedGzipMembers() throws IOException {
+        byte[] first = gzip(Arrays.copyOf(BODY, 100));
+        byte[] second = gzip(Arrays.copyOfRange(BODY, 100, BODY.length));
+        byte[] encoded = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, encoded, first.length, second.length);
+
+        assertArrayEquals(BODY, decode(ContentCoding.GZIP, encoded, 7));
+    }
+
+    @Test
+    public void shouldDecodeZlibAndRawDeflateBodies() throws IOException {
+        assertArrayEquals(BODY, decode(ContentCoding.DEFLATE, deflate(BODY, false), 5));
+        assertArrayEquals(BODY, decode(ContentCoding.DEFLATE, deflate(BODY, true), 5));
+    }
+
+    @Test
+    public void shouldDecodeEmptyBodies() throws IOException {
+        assertEquals(0, decode(ContentCoding.GZIP, new byte[0], 1).length);
+        assertEquals(0, decode(ContentCoding.DEFLATE, new byte[0], 1).length);
+    }
+
+    @Test
+    public void shouldFailOnTruncatedBodies() {
+        for (ContentCoding coding : ContentCoding.values()) {
+            byte[] encoded = coding == ContentCoding.GZIP ? gzip(BODY) : deflate(BODY, false);
+            try {
+                decode(coding, Arrays.copyOf(encoded, encoded.length - 4), 16);
+                fail(coding + " body should be truncated");
+            } catch (IOException ex) {
+                assertEquals("Unexpected end of the encoded body", ex.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void shouldFailOnCorruptedGzipBodies() {
+        byte[] encoded = gzip(BODY);
+        encoded[encoded.length - 8] ^= 1;
+        try {
+            decode(ContentCoding.GZIP, encoded, 16);
+            fail("Checksum should not match");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("checksum mismatch"));
+        }
+    }
+
+    @Test
+    public void shouldFailOnInvalidGzipHeaders() {
+        try {
+            decode(ContentCoding.GZIP, BODY, 16);
+            fail("Body should not be gzip encoded");
+        } catch (IOException ex) {
+            assertEquals("Invalid gzip body", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldEndDecodersMoreThanOnce() throws IOException {
+        ContentDecoder decoder = ContentCoding.GZIP.newDecoder();
+        decoder.decode(Buffer.buffer(Arrays.copyOf(gzip(BODY), 20)));
+        decoder.end();
+        decoder.end();
+
+        ContentDecoder finished = ContentCoding.DEFLATE.newDecoder();
+        finished.decode(Buffer.buffer(deflate(BODY, false)));
+        finished.finish();
+        finished.end();
+    }
+
+    /**
+     * Decodes the given encoded body, split into chunks of the given size.
+     */
+    static byte[] decode(ContentCoding coding, byte[] encoded, int chunkSize) throws IOException {
+        ContentDecoder decoder = coding.newDecoder();
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        try {
+            for (int offset = 0; offset < encoded.length; offset += chunkSize) {
+                int end = (int) Math.min(encoded.length, (long) offset + chunkSize);
+                decoded.write(decoder.decode(Buffer.buffer(Arrays.copyOfRange(encoded, offset, end))).getBytes());
+            }
+            decoder.finish();
+        } finally {
+            decoder.end();
+        }
+        return decoded.toByteArray();
+    }
+
+    static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(encoded)) {
+            out.write(data);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return encoded.toByteArray();
+    }
+
+    static byte[] deflate(byte[] data, boolean raw) {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+        try (OutputStream out = new DeflaterOutputStream(encoded, deflater)) {
+            out.write(data);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            deflater.end();
+        }
+        return encoded.toByteArray();
+    }
+
+    private static byte[] body() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            body.append("{\"id\":").append(i).append(",\"name\":\"record ").append(i * 31 % 97).append("\"}\n");
+        }
+        return body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.encoding;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author gr1d.io team
+ */
+public class ContentEncoderTest {
+
+    private static final byte[] FIRST = "{\"id\":1,\"name\":\"first\"}\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SECOND = "{\"id\":2,\"name\":\"second\"}\n".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void shouldEncodeGzipBodies() throws IOException {
+        assertArrayEquals(concat(FIRST, SECOND), read(new GZIPInputStream(encode(ContentCoding.GZIP, false))));
+    }
+
+    @Test
+    public void shouldEncodeZlibBodies() throws IOException {
+        assertArrayEquals(concat(FIRST, SECOND), read(new InflaterInputStream(encode(ContentCoding.DEFLATE, false))));
+    }
+
+    @Test
+    public void shouldFlushEachChunk() throws IOException {
+        for (ContentCoding coding : ContentCoding.values()) {
+            ContentEncoder encoder = coding.newEncoder(Deflater.DEFAULT_COMPRESSION);
+            ContentDecoder decoder = coding.newDecoder();
+            try {
+                // A flushed chunk is decoded whole before the end of the body
+                Buffer chunk = encoder.encode(Buffer.buffer(FIRST), true);
+                assertArrayEquals(FIRST, decoder.decode(chunk).getBytes());
+            } finally {
+                encoder.end();
+                decoder.end();
+            }
+        }
+    }
+
+    @Test
+    public void shouldRoundTripThroughTheDecoder() throws IOException {
+        for (ContentCoding coding : ContentCoding.values()) {
+            byte[] encoded = read(encode(coding, true));
+            assertArrayEquals(concat(FIRST, SECOND), ContentDecoderTest.decode(coding, encoded, 3));
+        }
+    }
+
+    @Test
+    public void shouldEncodeEmptyBodies() throws IOException {
+        ContentEncoder encoder = ContentCoding.GZIP.newEncoder(Deflater.DEFAULT_COMPRESSION);
+        byte[] encoded = encoder.finish().getBytes();
+
+        assertEquals(0, read(new GZIPInputStream(new ByteArrayInputStream(encoded))).length);
+    }
+
+    @Test
+    public void shouldEndEncodersMoreThanOnce() {
+        ContentEncoder encoder = ContentCoding.DEFLATE.newEncoder(Deflater.DEFAULT_COMPRESSION);
+        encoder.encode(Buffer.buffer(FIRST), false);
+        encoder.end();
+        encoder.end();
+
+        ContentEncoder finished = ContentCoding.GZIP.newEncoder(Deflater.DEFAULT_COMPRESSION);
+        finished.finish();
+        finished.end();
+    }
+
+    private static InputStream encode(ContentCoding coding, boolean flush) {
+        ContentEncoder encoder = coding.newEncoder(Deflater.DEFAULT_COMPRESSION);
+        Buffer encoded = encoder.encode(Buffer.buffer(FIRST), flush);
+        encoded.appendBuffer(encoder.encode(Buffer.buffer(SECOND), flush));
+        encoded.appendBuffer(encoder.finish());
+        return new ByteArrayInputStream(encoded.getBytes());
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int length;
+        while ((length = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] data = new byte[first.length + second.length];
+        System.arraycopy(first, 0, data, 0, first.length);
+        System.arraycopy(second, 0, data, first.length, second.length);
+        return data;
+    }
+}
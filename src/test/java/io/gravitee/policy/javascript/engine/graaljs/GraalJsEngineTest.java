@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.engine.graaljs;
+
+import io.gravitee.policy.javascript.engine.ScriptScope;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.script.ScriptException;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author gr1d.io team
+ */
+public class GraalJsEngineTest {
+
+    private final GraalJsEngine engine = new GraalJsEngine();
+
+    @After
+    public void dispose() {
+        engine.dispose();
+    }
+
+    @Test
+    public void shouldLookUpTheAllowedClasses() throws ScriptException {
+        assertEquals("FAILURE",
+                execute("Java.type('io.gravitee.policy.javascript.PolicyResult.State').FAILURE.name()"));
+        assertEquals("api", execute("Java.type('io.gravitee.gateway.api.ExecutionContext').ATTR_API"
+                + ".substring('gravitee.attribute.'.length)"));
+    }
+
+    @Test
+    public void shouldNotLookUpOtherClasses() {
+        assertFails("Java.type('java.lang.Runtime').getRuntime()");
+        assertFails("Java.type('java.lang.System').exit(1)");
+    }
+
+    @Test
+    public void shouldNotReflectOnBoundObjects() {
+        assertFails("request.getClass().forName('java.lang.Runtime')");
+        assertFails("request.getClass().getClassLoader().loadClass('java.lang.Runtime')");
+    }
+
+    @Test
+    public void shouldFilterClassesAndPackages() {
+        Predicate<String> filter = GraalJsEngine.classFilter(" java.util.List , io.gravitee.gateway.* ,");
+
+        assertTrue(filter.test("java.util.List"));
+        assertTrue(filter.test("io.gravitee.gateway.api.Request"));
+        assertTrue(filter.test("io.gravitee.gateway.api.Request$Nested"));
+        assertFalse(filter.test("java.util.ListIterator"));
+        assertFalse(filter.test("java.util.Map"));
+        assertFalse(filter.test("io.gravitee.gatewayx.Request"));
+    }
+
+    private Object execute(String source) throws ScriptException {
+        ScriptScope scope = engine.createScope();
+        try {
+            scope.bind("request", new StringBuilder());
+            return scope.execute(engine.compile(source));
+        } finally {
+            scope.dispose();
+        }
+    }
+
+    private void assertFails(String source) {
+        try {
+            execute(source);
+            fail("The script should have failed: " + source);
+        } catch (ScriptException ex) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.execution;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author gr1d.io team
+ */
+public class ScriptWatchdogTest {
+
+    // Stands for a script which can not be cancelled, such as a Nashorn infinite loop
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void releaseRunaways() {
+        release.countDown();
+    }
+
+    @Test
+    public void shouldRunInTheCallingThreadWithoutBudget() throws Exception {
+        ScriptWatchdog watchdog = new ScriptWatchdog(2, 1);
+
+        Thread thread = watchdog.run("a", 0, Thread::currentThread, () -> { }, false);
+
+        assertEquals(Thread.currentThread(), thread);
+        assertEquals(0, watchdog.getEvaluations());
+    }
+
+    @Test
+    public void shouldAbortAScriptExceedingItsBudget() throws Exception {
+        ScriptWatchdog watchdog = new ScriptWatchdog(2, 1);
+
+        try {
+            watchdog.run("a", 20, this::runaway, () -> { }, false);
+            fail("The script should have been aborted");
+        } catch (ScriptTimeoutException ex) {
+            assertEquals(20, ex.getBudget());
+        }
+        assertEquals(1, watchdog.getAborted());
+        assertEquals(1, watchdog.getRunaways());
+    }
+
+    @Test
+    public void shouldQuarantineAScriptOnceItHasTooManyRunaways() throws Exception {
+        ScriptWatchdog watchdog = new ScriptWatchdog(4, 2);
+
+        for (int i = 0; i < 10; i++) {
+            try {
+                watchdog.run("a", 20, this::runaway, () -> { }, false);
+                fail("The script should have been aborted or rejected");
+            } catch (ScriptTimeoutException ex) {
+                assertTrue("Aborted after the quarantine", i < 2);
+            } catch (RejectedExecutionException ex) {
+                assertTrue("Rejected before the quarantine", i >= 2);
+            }
+        }
+
+        // The runaways of the script hold no more threads than its quota, leaving the others to the other scripts
+        assertEquals(2, watchdog.getActiveThreads());
+        assertEquals(1, watchdog.getQuarantinedScripts());
+        assertEquals(8, watchdog.getQuarantined());
+        assertEquals("b", watchdog.run("b", 1000, () -> "b", () -> { }, false));
+
+        // Once its runaways complete, the script is evaluated again
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (watchdog.getRunaways() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, watchdog.getQuarantinedScripts());
+        assertEquals("a", watchdog.run("a", 1000, () -> "a", () -> { }, false));
+    }
+
+    @Test
+    public void shouldCancelACancellableScriptInTheCallingThread() throws Exception {
+        ScriptWatchdog watchdog = new ScriptWatchdog(1, 1);
+        Thread caller = Thread.currentThread();
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        try {
+            watchdog.run("a", 20, () -> {
+                assertEquals(caller, Thread.currentThread());
+                while (!cancelled.get()) {
+                    Thread.sleep(1);
+                }
+                throw new IllegalStateException("Cancelled");
+            }, () -> cancelled.set(true), true);
+            fail("The script should have been cancelled");
+        } catch (ScriptTimeoutException ex) {
+            assertEquals(20, ex.getBudget());
+        }
+        assertEquals(1, watchdog.getAborted());
+        assertEquals(0, watchdog.getRunaways());
+        assertEquals(0, watchdog.getActiveThreads());
+    }
+
+    @Test
+    public void shouldNotCancelACancellableScriptWithinItsBudget() throws Exception {
+        ScriptWatchdog watchdog = new ScriptWatchdog(1, 1);
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        assertEquals("a", watchdog.run("a", 1000, () -> "a", () -> cancelled.set(true), true));
+        Thread.sleep(50);
+        assertFalse(cancelled.get());
+        assertEquals(0, watchdog.getAborted());
+    }
+
+    private Object runaway() {
+        // Ignores interruptions, as Nashorn does
+        while (true) {
+            try {
+                if (release.await(1, TimeUnit.SECONDS)) {
+                    return null;
+                }
+            } catch (InterruptedException ex) {
+                // Keeps running
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.fixtures;
+
+import io.gravitee.gateway.api.Request;
+import io.gravitee.gateway.api.Response;
+import io.gravitee.policy.api.PolicyChain;
+import io.gravitee.policy.api.PolicyResult;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link PolicyChain} remembering how it was last continued.
+ *
+ * @author gr1d.io team
+ */
+public class RecordingPolicyChain implements PolicyChain {
+
+    private volatile CountDownLatch done = new CountDownLatch(1);
+    private volatile boolean next;
+    private volatile PolicyResult failure;
+    private volatile boolean streamed;
+    private volatile Thread thread;
+
+    @Override
+    public void doNext(Request request, Response response) {
+        complete(true, null, false);
+    }
+
+    @Override
+    public void failWith(PolicyResult policyResult) {
+        complete(false, policyResult, false);
+    }
+
+    @Override
+    public void streamFailWith(PolicyResult policyResult) {
+        complete(false, policyResult, true);
+    }
+
+    private void complete(boolean next, PolicyResult failure, boolean streamed) {
+        this.next = next;
+        this.failure = failure;
+        this.streamed = streamed;
+        this.thread = Thread.currentThread();
+        done.countDown();
+    }
+
+    /**
+     * Waits for the chain to be continued, returning <code>false</code> if it was not before the given timeout.
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    public RecordingPolicyChain reset() {
+        done = new CountDownLatch(1);
+        next = false;
+        failure = null;
+        streamed = false;
+        thread = null;
+        return this;
+    }
+
+    public boolean isNext() {
+        return next;
+    }
+
+    public PolicyResult getFailure() {
+        return failure;
+    }
+
+    public boolean isStreamed() {
+        return streamed;
+    }
+
+    public Thread getThread() {
+        return thread;
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.fixtures;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable heap {@link Buffer}, whose native buffer is a read-only {@link ByteBuffer} view of its bytes.
+ *
+ * @author gr1d.io team
+ */
+public class SimpleBuffer implements Buffer {
+
+    private byte[] bytes;
+    private int length;
+
+    public SimpleBuffer() {
+        this(new byte[0]);
+    }
+
+    public SimpleBuffer(byte[] bytes) {
+        this.bytes = bytes;
+        this.length = bytes.length;
+    }
+
+    @Override
+    public Buffer appendBuffer(Buffer buffer) {
+        if (buffer instanceof SimpleBuffer) {
+            SimpleBuffer other = (SimpleBuffer) buffer;
+            append(other.bytes, other.length);
+        } else {
+            byte[] other = buffer.getBytes();
+            append(other, other.length);
+        }
+        return this;
+    }
+
+    @Override
+    public Buffer appendString(String value, String enc) {
+        return appendBuffer(new SimpleBuffer(value.getBytes(Charset.forName(enc))));
+    }
+
+    @Override
+    public Buffer appendString(String value) {
+        return appendBuffer(new SimpleBuffer(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void append(byte[] other, int otherLength) {
+        if (length + otherLength > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + otherLength));
+        }
+        System.arraycopy(other, 0, bytes, length, otherLength);
+        length += otherLength;
+    }
+
+    @Override
+    public String toString() {
+        return toString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString(String enc) {
+        return toString(Charset.forName(enc));
+    }
+
+    @Override
+    public String toString(Charset charset) {
+        return new String(bytes, 0, length, charset);
+    }
+
+    @Override
+    public byte[] getBytes() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public Object getNativeBuffer() {
+        return ByteBuffer.wrap(bytes, 0, length).slice().asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.fixtures;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.buffer.BufferFactory;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The {@link BufferFactory} used by {@link Buffer#buffer()} in the tests, registered as a service.
+ *
+ * @author gr1d.io team
+ */
+public class SimpleBufferFactory implements BufferFactory {
+
+    @Override
+    public Buffer buffer(int initialSizeHint) {
+        return new SimpleBuffer();
+    }
+
+    @Override
+    public Buffer buffer() {
+        return new SimpleBuffer();
+    }
+
+    @Override
+    public Buffer buffer(String str) {
+        return new SimpleBuffer(str.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Buffer buffer(String str, String enc) {
+        return new SimpleBuffer(str.getBytes(Charset.forName(enc)));
+    }
+
+    @Override
+    public Buffer buffer(byte[] bytes) {
+        return new SimpleBuffer(bytes);
+    }
+}
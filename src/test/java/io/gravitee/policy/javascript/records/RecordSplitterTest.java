@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.records;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.javascript.configuration.RecordFormat;
+import io.gravitee.policy.javascript.fixtures.SimpleBuffer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author gr1d.io team
+ */
+public class RecordSplitterTest {
+
+    @Test
+    public void shouldSplitLines() throws Exception {
+        assertEquals(Arrays.asList("{\"id\":1}", "{\"id\":2}", "{\"id\":3}"),
+                split(RecordFormat.NDJSON, "{\"id\":1}\n{\"id\":2}\r\n\n  \n{\"id\":3}"));
+    }
+
+    @Test
+    public void shouldSplitLinesAcrossChunks() throws Exception {
+        String body = "{\"name\":\"é\"}\n{\"id\":2}\n";
+        for (int size = 1; size <= body.length(); size++) {
+            assertEquals("Chunks of " + size + " bytes", Arrays.asList("{\"name\":\"é\"}", "{\"id\":2}"),
+                    split(RecordFormat.NDJSON, chunks(body, size)));
+        }
+    }
+
+    @Test
+    public void shouldSplitJsonArrays() throws Exception {
+        assertEquals(Arrays.asList("{\"id\":1,\"tags\":[\"a\",\"b\"]}", "\"x,]\\\"y\"", "[1,2]", "3"),
+                split(RecordFormat.JSON_ARRAY, " [ {\"id\":1,\"tags\":[\"a\",\"b\"]}, \"x,]\\\"y\" ,[1,2],3 ]\n"));
+    }
+
+    @Test
+    public void shouldSplitJsonArraysAcrossChunks() throws Exception {
+        String body = "[{\"s\":\"a,\\\"}\"},{\"n\":[1,{\"m\":2}]}]";
+        for (int size = 1; size <= body.length(); size++) {
+            assertEquals("Chunks of " + size + " bytes", Arrays.asList("{\"s\":\"a,\\\"}\"}", "{\"n\":[1,{\"m\":2}]}"),
+                    split(RecordFormat.JSON_ARRAY, chunks(body, size)));
+        }
+    }
+
+    @Test
+    public void shouldSplitEmptyJsonArrays() throws Exception {
+        assertEquals(Collections.emptyList(), split(RecordFormat.JSON_ARRAY, "[ ]"));
+    }
+
+    @Test
+    public void shouldSplitChunksViewedAtAnOffset() throws Exception {
+        RecordSplitter splitter = RecordSplitter.of(RecordFormat.NDJSON);
+        List<String> records = new ArrayList<>();
+        splitter.write(offset("{\"id\":1}\n{\"id\""), record -> records.add(record.toString()));
+        splitter.write(offset(":2}\n {\"id\":3} \n"), record -> records.add(record.toString()));
+        splitter.end(record -> records.add(record.toString()));
+        assertEquals(Arrays.asList("{\"id\":1}", "{\"id\":2}", "{\"id\":3}"), records);
+    }
+
+    @Test
+    public void shouldRejectBodiesNotBeingJsonArrays() throws Exception {
+        assertFails("{\"id\":1}", "Unexpected character '{', the body must be a JSON array");
+        assertFails("[1] [2]", "Unexpected character '[', the body must be a JSON array");
+        assertFails("[1, 2", "Unexpected end of the body, the JSON array is not closed");
+    }
+
+    private static void assertFails(String body, String message) throws Exception {
+        try {
+            split(RecordFormat.JSON_ARRAY, body);
+            fail("The body should be rejected: " + body);
+        } catch (IOException ex) {
+            assertEquals(message, ex.getMessage());
+        }
+    }
+
+    private static List<String> split(RecordFormat format, String body) throws Exception {
+        return split(format, chunks(body, Integer.MAX_VALUE));
+    }
+
+    private static List<String> split(RecordFormat format, List<byte[]> chunks) throws Exception {
+        RecordSplitter splitter = RecordSplitter.of(format);
+        List<String> records = new ArrayList<>();
+        for (byte[] chunk : chunks) {
+            splitter.write(Buffer.buffer(chunk), record -> records.add(record.toString()));
+        }
+        splitter.end(record -> records.add(record.toString()));
+        return records;
+    }
+
+    /**
+     * Returns a buffer whose native buffer is positioned after some padding, as the slice of a larger Netty buffer.
+     */
+    private static Buffer offset(String chunk) {
+        byte[] bytes = ("####" + chunk + "####").getBytes(StandardCharsets.UTF_8);
+        return new SimpleBuffer(Arrays.copyOfRange(bytes, 4, bytes.length - 4)) {
+            @Override
+            public Object getNativeBuffer() {
+                return ByteBuffer.wrap(bytes, 4, bytes.length - 8);
+            }
+        };
+    }
+
+    /**
+     * Splits the UTF-8 bytes of the given body into chunks of the given size, which may split a multi-byte character.
+     */
+    private static List<byte[]> chunks(String body, int size) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        List<byte[]> chunks = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i += size) {
+            chunks.add(Arrays.copyOfRange(bytes, i, i + Math.min(size, bytes.length - i)));
+        }
+        return chunks;
+    }
+}
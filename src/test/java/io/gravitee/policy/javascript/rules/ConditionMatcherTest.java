@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.rules;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.common.http.HttpMethod;
+import io.gravitee.policy.javascript.configuration.ScriptCondition;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author gr1d.io team
+ */
+public class ConditionMatcherTest {
+
+    @Test
+    public void shouldNotCompileMissingConditions() {
+        assertNull(ConditionMatcher.of(null));
+    }
+
+    @Test
+    public void shouldMatchPathPrefixAndPattern() {
+        ScriptCondition condition = new ScriptCondition();
+        condition.setPathPrefix("/v1/");
+        condition.setPathPattern("/v1/users/[0-9]+");
+        ConditionMatcher matcher = ConditionMatcher.of(condition);
+
+        assertNull(matcher.getError());
+        assertTrue(matcher.matches("/v1/users/42", HttpMethod.GET, new HttpHeaders()));
+        assertFalse(matcher.matches("/v1/users/me", HttpMethod.GET, new HttpHeaders()));
+        assertFalse(matcher.matches("/v2/users/42", HttpMethod.GET, new HttpHeaders()));
+        assertFalse(matcher.matches(null, HttpMethod.GET, new HttpHeaders()));
+    }
+
+    @Test
+    public void shouldMatchMethodsHeaderAndContentType() {
+        ScriptCondition condition = new ScriptCondition();
+        condition.setMethods(Arrays.asList("get", " POST "));
+        condition.setHeader("X-Tenant");
+        condition.setContentType("Application/JSON");
+        ConditionMatcher matcher = ConditionMatcher.of(condition);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Tenant", "acme");
+        headers.set(HttpHeaders.CONTENT_TYPE, "application/json; charset=UTF-8");
+        assertTrue(matcher.matches("/", HttpMethod.POST, headers));
+        assertFalse(matcher.matches("/", HttpMethod.DELETE, headers));
+
+        headers.set(HttpHeaders.CONTENT_TYPE, "text/plain");
+        assertFalse(matcher.matches("/", HttpMethod.POST, headers));
+
+        headers.remove("X-Tenant");
+        headers.set(HttpHeaders.CONTENT_TYPE, "application/json");
+        assertFalse(matcher.matches("/", HttpMethod.POST, headers));
+    }
+
+    @Test
+    public void shouldShareTheMatchersOfIdenticalConditions() {
+        ScriptCondition first = new ScriptCondition();
+        first.setPathPrefix("/shared/");
+        ScriptCondition second = new ScriptCondition();
+        second.setPathPrefix("/shared/");
+
+        assertSame(ConditionMatcher.of(first), ConditionMatcher.of(second));
+    }
+
+    @Test
+    public void shouldHoldTheErrorOfMalformedPathPatterns() {
+        ScriptCondition condition = new ScriptCondition();
+        condition.setPathPattern("/users/[0-9");
+        ConditionMatcher matcher = ConditionMatcher.of(condition);
+
+        assertTrue(matcher.getError().startsWith("invalid path pattern /users/[0-9"));
+        assertTrue(matcher.matches("/orders", HttpMethod.GET, new HttpHeaders()));
+        assertSame(matcher, ConditionMatcher.of(condition));
+    }
+
+    @Test
+    public void shouldHoldTheErrorOfUnknownMethods() {
+        ScriptCondition condition = new ScriptCondition();
+        condition.setMethods(Collections.singletonList("FETCH"));
+        ConditionMatcher matcher = ConditionMatcher.of(condition);
+
+        assertTrue(matcher.getError().startsWith("unknown HTTP method"));
+        assertSame(matcher, ConditionMatcher.of(condition));
+    }
+}
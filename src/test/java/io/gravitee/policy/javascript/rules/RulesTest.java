@@ -0,0 +1,141 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.rules;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.policy.api.PolicyResult;
+import io.gravitee.policy.javascript.configuration.ConditionOperator;
+import io.gravitee.policy.javascript.configuration.Rule;
+import io.gravitee.policy.javascript.configuration.RuleAction;
+import io.gravitee.policy.javascript.configuration.RuleCondition;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author gr1d.io team
+ */
+public class RulesTest {
+
+    private HttpHeaders headers;
+
+    @Before
+    public void setUp() {
+        headers = new HttpHeaders();
+        headers.set("X-Env", "prod");
+    }
+
+    @Test
+    public void shouldSetAddAndRemoveHeaders() {
+        PolicyResult result = Rules.apply(Arrays.asList(
+                rule(RuleAction.SET_HEADER, "X-Env", "dev", null),
+                rule(RuleAction.ADD_HEADER, "X-Tag", "a", null),
+                rule(RuleAction.ADD_HEADER, "X-Tag", "b", null),
+                rule(RuleAction.REMOVE_HEADER, "X-Removed", null, null)), headers);
+
+        assertNull(result);
+        assertEquals("dev", headers.getFirst("X-Env"));
+        assertEquals(Arrays.asList("a", "b"), headers.get("X-Tag"));
+    }
+
+    @Test
+    public void shouldRejectWithTheFirstRejectingRule() {
+        Rule reject = rule(RuleAction.REJECT, null, null, null);
+        reject.setStatus(401);
+        reject.setError("Unauthorized");
+        reject.setContentType("text/plain");
+
+        PolicyResult result = Rules.apply(Arrays.asList(
+                reject,
+                rule(RuleAction.SET_HEADER, "X-Env", "dev", null)), headers);
+
+        assertEquals(401, result.httpStatusCode());
+        assertEquals("Unauthorized", result.message());
+        assertEquals("text/plain", result.contentType());
+        assertEquals("prod", headers.getFirst("X-Env"));
+    }
+
+    @Test
+    public void shouldApplyRulesWhoseConditionMatches() {
+        Rules.apply(Arrays.asList(
+                rule(RuleAction.SET_HEADER, "X-Exists", "true", condition("X-Env", ConditionOperator.EXISTS, null)),
+                rule(RuleAction.SET_HEADER, "X-Missing", "true", condition("X-Env", ConditionOperator.MISSING, null)),
+                rule(RuleAction.SET_HEADER, "X-Equals", "true", condition("X-Env", ConditionOperator.EQUALS, "prod")),
+                rule(RuleAction.SET_HEADER, "X-Not-Equals", "true",
+                        condition("X-Env", ConditionOperator.NOT_EQUALS, "prod"))), headers);
+
+        assertTrue(headers.containsKey("X-Exists"));
+        assertFalse(headers.containsKey("X-Missing"));
+        assertTrue(headers.containsKey("X-Equals"));
+        assertFalse(headers.containsKey("X-Not-Equals"));
+    }
+
+    @Test
+    public void shouldApplyRulesWithAnEmptyCondition() {
+        Rules.apply(Arrays.asList(
+                rule(RuleAction.SET_HEADER, "X-No-Condition", "true", null),
+                rule(RuleAction.SET_HEADER, "X-No-Header", "true", condition(null, ConditionOperator.EXISTS, null)),
+                rule(RuleAction.SET_HEADER, "X-Blank-Header", "true", condition(" ", ConditionOperator.EXISTS, null))),
+                headers);
+
+        assertTrue(headers.containsKey("X-No-Condition"));
+        assertTrue(headers.containsKey("X-No-Header"));
+        assertTrue(headers.containsKey("X-Blank-Header"));
+    }
+
+    @Test
+    public void shouldDefaultToTheExistsOperator() {
+        Rules.apply(Collections.singletonList(
+                rule(RuleAction.SET_HEADER, "X-Exists", "true", condition("X-Env", null, null))), headers);
+
+        assertTrue(headers.containsKey("X-Exists"));
+    }
+
+    @Test
+    public void shouldIgnoreIncompleteRules() {
+        PolicyResult result = Rules.apply(Arrays.asList(
+                rule(null, "X-Env", "dev", null),
+                rule(RuleAction.SET_HEADER, null, "dev", null),
+                rule(RuleAction.SET_HEADER, "X-Env", null, null)), headers);
+
+        assertNull(result);
+        assertEquals("prod", headers.getFirst("X-Env"));
+    }
+
+    private static Rule rule(RuleAction action, String header, String value, RuleCondition condition) {
+        Rule rule = new Rule();
+        rule.setAction(action);
+        rule.setHeader(header);
+        rule.setValue(value);
+        rule.setCondition(condition);
+        return rule;
+    }
+
+    private static RuleCondition condition(String header, ConditionOperator operator, String value) {
+        RuleCondition condition = new RuleCondition();
+        condition.setHeader(header);
+        condition.setOperator(operator);
+        condition.setValue(value);
+        return condition;
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.javascript.utils;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.javascript.fixtures.SimpleBuffer;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author gr1d.io team
+ */
+public class DigestsTest {
+
+    @Test
+    public void shouldHashStringsAsUtf8() {
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", Digests.sha1("abc"));
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", Digests.sha256("abc"));
+        assertEquals(Digests.sha1("héllo".getBytes(StandardCharsets.UTF_8)), Digests.sha1("héllo"));
+    }
+
+    @Test
+    public void shouldHashBuffersThroughTheirNativeBuffer() {
+        byte[] bytes = new byte[100_000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        Buffer buffer = new SimpleBuffer(bytes);
+
+        assertEquals(Digests.sha1(bytes), Digests.sha1(buffer));
+        assertEquals(Digests.sha256(bytes), Digests.sha256(buffer));
+    }
+
+    @Test
+    public void shouldViewBuffersWithoutCopy() {
+        byte[] bytes = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer view = Buffers.view(new SimpleBuffer(bytes));
+
+        assertTrue(view.isReadOnly());
+        assertEquals(bytes.length, view.remaining());
+        bytes[0] = '[';
+        assertEquals('[', view.get(0));
+    }
+
+    @Test
+    public void shouldCopyUnknownNativeBuffers() {
+        Buffer buffer = new SimpleBuffer("abc".getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public Object getNativeBuffer() {
+                return new Object();
+            }
+        };
+
+        assertEquals(Digests.sha1("abc"), Digests.sha1(buffer));
+    }
+}